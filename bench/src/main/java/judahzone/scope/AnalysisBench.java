@@ -0,0 +1,77 @@
+package judahzone.scope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import judahzone.data.Transform;
+
+/** FILE mode analysis: one FFT frame on a worker's Transformer, the stereo view's L/R/M/S frame
+ * (one packed complex FFT) against per-channel Transformer frames, and a whole progressive load
+ * (decode + parallel FFT into a ColumnDb) of synthetic WAVs. */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnalysisBench {
+
+	/** file length in FFT frames */
+	@Param({ "256", "4096" })
+	int frames;
+
+	private File wav;
+	private float[][] audio;
+	private final StereoFFT stereo = new StereoFFT();
+
+	@Setup
+	public void setup() throws IOException {
+		wav = Fixtures.wav(frames);
+		audio = Fixtures.stereo(0, new Random(1));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Transform analyzeFrame() {
+		return FileAnalyzer.analyze(audio[0], audio[1]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public float[] stereoFrame() {
+		stereo.analyze(audio[0], audio[1]);
+		return stereo.magnitudes(StereoFFT.View.SIDE);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Transform perChannelFrames() {
+		FileAnalyzer.analyze(audio[0], audio[0]);
+		return FileAnalyzer.analyze(audio[1], audio[1]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public FrameDb loadFile() {
+		FileStream stream = FileStream.open(wav);
+		stream.run(null, (from, to) -> { });
+		return stream.getDb();
+	}
+
+}
@@ -0,0 +1,84 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import judahzone.util.Constants;
+
+/** Deterministic synthetic input for the benchmarks: spectra with a falling floor and a few
+ * drifting harmonic peaks, matching stereo audio, and WAV files at the engine sample rate. */
+final class Fixtures {
+
+	private Fixtures() { }
+
+	static float[] magnitudes(int bins, int frame, Random random) {
+		float[] result = new float[bins];
+		for (int i = 1; i < bins; i++)
+			result[i] = (float) (8.0 / Math.sqrt(i) * (0.5 + random.nextFloat()));
+		int fundamental = 8 + (frame * 3) % Math.max(1, bins / 16);
+		for (int h = 1; h <= 8 && fundamental * h < bins; h++)
+			result[fundamental * h] += 400f / h;
+		return result;
+	}
+
+	/** frames x bins spectra (every frame filled), optionally with pyramid levels */
+	static FrameDb db(int frames, int bins, ColumnDb.Precision precision, boolean pyramid) {
+		Random random = new Random(frames * 31L + bins);
+		ColumnDb db = new ColumnDb(frames, precision);
+		for (int i = 0; i < frames; i++) {
+			float level = 0.05f + 0.05f * (float) Math.sin(i * 0.01);
+			db.set(i, magnitudes(bins, i, random), level, level * 2.5f);
+		}
+		if (!pyramid)
+			return db;
+		Pyramid result = new Pyramid(db);
+		result.build("fixture");
+		return result;
+	}
+
+	/** FFT_SIZE stereo samples: two detuned sines plus a little noise */
+	static float[][] stereo(int frame, Random random) {
+		float[] left = new float[FFT_SIZE];
+		float[] right = new float[FFT_SIZE];
+		double rate = Constants.sampleRate();
+		for (int i = 0; i < FFT_SIZE; i++) {
+			double t = (frame * (double) FFT_SIZE + i) / rate;
+			left[i] = (float) (0.4 * Math.sin(2 * Math.PI * 220 * t)) + (random.nextFloat() - 0.5f) * 0.02f;
+			right[i] = (float) (0.4 * Math.sin(2 * Math.PI * 221.5 * t)) + (random.nextFloat() - 0.5f) * 0.02f;
+		}
+		return new float[][] { left, right };
+	}
+
+	/** 16 bit stereo WAV of frames * FFT_SIZE samples, deleted on exit */
+	static File wav(int frames) throws IOException {
+		Random random = new Random(frames);
+		byte[] bytes = new byte[frames * FFT_SIZE * 4];
+		int b = 0;
+		for (int frame = 0; frame < frames; frame++) {
+			float[][] audio = stereo(frame, random);
+			for (int i = 0; i < FFT_SIZE; i++)
+				for (float[] channel : audio) {
+					short sample = (short) (channel[i] * 32767);
+					bytes[b++] = (byte) sample;
+					bytes[b++] = (byte) (sample >> 8);
+				}
+		}
+		AudioFormat format = new AudioFormat(Constants.sampleRate(), 16, 2, true, false);
+		File result = File.createTempFile("zone-scope-bench", ".wav");
+		result.deleteOnExit();
+		try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(bytes), format, frames * (long) FFT_SIZE)) {
+			AudioSystem.write(in, AudioFileFormat.Type.WAVE, result);
+		}
+		return result;
+	}
+
+}
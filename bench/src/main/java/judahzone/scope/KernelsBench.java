@@ -0,0 +1,69 @@
+package judahzone.scope;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Scalar vs Vector API Kernels on one Spectrometer frame's worth of bins and bars. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelsBench {
+
+	@Param({ "scalar", "vector" })
+	String kernels;
+	@Param({ "2048", "8192" })
+	int bins;
+
+	private static final int BARS = 800;
+
+	private Kernels k;
+	private float[] magnitudes;
+	private float[] power;
+	private final float[] bars = new float[BARS];
+	private final float[] db = new float[BARS];
+	private final int[] left = new int[BARS];
+	private final int[] right = new int[BARS];
+
+	@Setup
+	public void setup() {
+		k = "vector".equals(kernels) ? Kernels.vector() : Kernels.scalar();
+		if (k == null)
+			throw new IllegalStateException("jdk.incubator.vector not loaded");
+		magnitudes = Fixtures.magnitudes(bins, 0, new Random(bins));
+		power = new float[bins];
+		double ratio = (bins - 1) / 2.0;
+		for (int bx = 0; bx < BARS; bx++) { // log spaced, like Spectrometer.layout
+			left[bx] = (int) Math.floor(2 * Math.pow(ratio, bx / (double) BARS));
+			right[bx] = Math.max(left[bx], (int) Math.ceil(2 * Math.pow(ratio, (bx + 1) / (double) BARS)) - 1);
+		}
+	}
+
+	@Benchmark
+	public float frame() {
+		float max = k.squares(magnitudes, power, bins);
+		k.means(power, left, right, bars, BARS);
+		k.db(bars, db, BARS);
+		return max + db[BARS - 1];
+	}
+
+	@Benchmark
+	public float max() {
+		return k.max(magnitudes, 0, bins);
+	}
+
+}
@@ -0,0 +1,54 @@
+package judahzone.scope;
+
+import java.awt.Dimension;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JToggleButton;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Spectrometer.drawImage per live frame, across bin counts and widths. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector" })
+public class SpectrometerBench {
+
+	private static final int FRAMES = 16; // power of 2
+
+	@Param({ "512", "2048", "8192" })
+	int bins;
+	@Param({ "800", "1600" })
+	int width;
+
+	private Spectrometer spectrometer;
+	private final float[][] frames = new float[FRAMES][];
+	private int next;
+
+	@Setup
+	public void setup() {
+		spectrometer = new Spectrometer(new Dimension(width, 300), new JToggleButton("Live", true));
+		Random random = new Random(bins);
+		for (int i = 0; i < FRAMES; i++)
+			frames[i] = Fixtures.magnitudes(bins, i, random);
+	}
+
+	@Benchmark
+	public void drawImage() {
+		spectrometer.analyze(frames[next++ & (FRAMES - 1)], 0.1f);
+	}
+
+}
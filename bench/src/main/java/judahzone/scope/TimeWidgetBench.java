@@ -0,0 +1,67 @@
+package judahzone.scope;
+
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Spectrogram/RMSMeter full-range regenerations and single columns over synthetic files. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx4g", "--add-modules=jdk.incubator.vector" })
+public class TimeWidgetBench {
+
+	@Param({ "1024", "2048", "4096" })
+	int bins;
+	@Param({ "1100", "2200" })
+	int width;
+	/** file length in FFT frames (~2 sec .. ~35 min at 48k/2048) */
+	@Param({ "1000", "50000" })
+	int frames;
+	@Param({ "false", "true" })
+	boolean pyramid;
+
+	private Spectrogram spectrogram;
+	private RMSMeter rms;
+	private float unit;
+	private int next;
+
+	@Setup
+	public void setup() {
+		FrameDb db = Fixtures.db(frames, bins, ColumnDb.DEFAULT, pyramid);
+		spectrogram = new Spectrogram(new Dimension(width, TimeDomain.HEIGHT_SPECTRUM), db);
+		rms = new RMSMeter(new Dimension(width, TimeDomain.HEIGHT_RMS), db, null);
+		unit = width / (float) frames;
+	}
+
+	@Benchmark
+	public void spectrogramFullRange() {
+		spectrogram.generateImage(unit, 0, frames - 1);
+	}
+
+	@Benchmark
+	public void rmsFullRange() {
+		rms.generateImage(unit, 0, frames - 1);
+	}
+
+	/** one new column, as a live/streaming write */
+	@Benchmark
+	public void spectrogramColumn() {
+		int idx = next++ % frames;
+		spectrogram.drawCell(idx % width, idx, 1);
+	}
+
+}
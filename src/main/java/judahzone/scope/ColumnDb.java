@@ -0,0 +1,182 @@
+package judahzone.scope;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import judahzone.data.Transform;
+import judahzone.util.RTLogger;
+
+/** Columnar FrameDb for files: one contiguous magnitudes block plus parallel rms/peak arrays,
+ * instead of a Transform (array + RMS record) per frame.  Magnitudes are optionally stored as
+ * 16 or 8 bit dB steps and expanded through a lookup table on read.
+ *
+ * Frames are written once by the analysis workers (distinct indices, no locking) and
+ * published by a release store of their filled flag: the EDT may read any frame mid-load
+ * (zoom, scroll, resize), and has() true means its magnitudes and levels are visible. */
+public class ColumnDb implements FrameDb {
+
+	public static enum Precision {
+		/** 32 bit magnitudes, exact */
+		FLOAT(0),
+		/** 16 bit dB steps (~0.003 dB) */
+		DB16(0xFFFF),
+		/** 8 bit dB steps (~0.8 dB) */
+		DB8(0xFF);
+
+		final int steps;
+		Precision(int steps) { this.steps = steps; }
+	}
+
+	/** -Dzone.scope.precision=FLOAT|DB16|DB8 */
+	public static final Precision DEFAULT = precision(System.getProperty("zone.scope.precision"));
+
+	/** quantized dB window, magnitudes below MIN_DB read back as 0 */
+	static final float MIN_DB = -120f;
+	static final float MAX_DB = 80f;
+
+	private static float[] lut16, lut8;
+
+	/** @return the named precision, DB16 if null or unknown */
+	static Precision precision(String name) {
+		if (name == null)
+			return Precision.DB16;
+		try {
+			return Precision.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			RTLogger.warn(ColumnDb.class, "zone.scope.precision=" + name + " unknown, using " + Precision.DB16);
+			return Precision.DB16;
+		}
+	}
+
+	private final int frames;
+	private final Precision precision;
+	private final float[] rms;
+	private final float[] peak;
+	/** 1 once a frame is written, stored last (release) and read first */
+	private final AtomicIntegerArray filled;
+	/** magnitudes per frame, known from the first frame written */
+	private volatile int bins;
+	private float[] floats;
+	private short[] shorts;
+	private byte[] bytes;
+	private float[] lut;
+
+	public ColumnDb(int frames) {
+		this(frames, DEFAULT);
+	}
+
+	public ColumnDb(int frames, Precision precision) {
+		this.frames = frames;
+		this.precision = precision;
+		rms = new float[frames];
+		peak = new float[frames];
+		filled = new AtomicIntegerArray(frames);
+	}
+
+	private synchronized void allocate(int count) {
+		if (bins != 0)
+			return;
+		long total = (long) frames * count;
+		if (total > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("too many frames for one block: " + frames + " x " + count);
+		switch (precision) {
+			case FLOAT -> floats = new float[(int) total];
+			case DB16 -> { shorts = new short[(int) total]; lut = lut(precision); }
+			case DB8 -> { bytes = new byte[(int) total]; lut = lut(precision); }
+		}
+		bins = count;
+	}
+
+	/** dB step -> magnitude, step 0 is silence */
+	static synchronized float[] lut(Precision p) {
+		if (p == Precision.DB16 && lut16 != null)
+			return lut16;
+		if (p == Precision.DB8 && lut8 != null)
+			return lut8;
+		float[] result = new float[p.steps + 1];
+		for (int q = 1; q <= p.steps; q++)
+			result[q] = (float) Math.pow(10, (MIN_DB + q * (MAX_DB - MIN_DB) / p.steps) / 20.0);
+		if (p == Precision.DB16)
+			lut16 = result;
+		else
+			lut8 = result;
+		return result;
+	}
+
+	/** magnitude -> dB step of p (0: silence) */
+	static int quantize(float magnitude, Precision p) {
+		if (!(magnitude > 0f))
+			return 0;
+		float db = 20f * (float) Math.log10(magnitude);
+		if (db <= MIN_DB)
+			return 0;
+		int q = Math.round((db - MIN_DB) * p.steps / (MAX_DB - MIN_DB));
+		return Math.max(1, Math.min(p.steps, q));
+	}
+
+	@Override public int size() {
+		return frames;
+	}
+
+	@Override public boolean has(int idx) {
+		return filled.get(idx) != 0;
+	}
+
+	@Override public int bins() {
+		return bins;
+	}
+
+	public Precision getPrecision() {
+		return precision;
+	}
+
+	@Override public float[] magnitudes(int idx, float[] scratch) {
+		final int n = bins;
+		final int offset = idx * n;
+		switch (precision) {
+			case FLOAT -> System.arraycopy(floats, offset, scratch, 0, n);
+			case DB16 -> {
+				for (int i = 0; i < n; i++)
+					scratch[i] = lut[shorts[offset + i] & 0xFFFF];
+			}
+			case DB8 -> {
+				for (int i = 0; i < n; i++)
+					scratch[i] = lut[bytes[offset + i] & 0xFF];
+			}
+		}
+		return scratch;
+	}
+
+	@Override public float rms(int idx) {
+		return rms[idx];
+	}
+
+	@Override public float peak(int idx) {
+		return peak[idx];
+	}
+
+	@Override public void set(int idx, Transform t) {
+		set(idx, t.magnitudes(), t.rms().rms(), t.rms().peak());
+	}
+
+	public void set(int idx, float[] magnitudes, float rms, float peak) {
+		if (bins == 0)
+			allocate(magnitudes.length);
+		final int n = Math.min(bins, magnitudes.length);
+		final int offset = idx * bins;
+		switch (precision) {
+			case FLOAT -> System.arraycopy(magnitudes, 0, floats, offset, n);
+			case DB16 -> {
+				for (int i = 0; i < n; i++)
+					shorts[offset + i] = (short) quantize(magnitudes[i], precision);
+			}
+			case DB8 -> {
+				for (int i = 0; i < n; i++)
+					bytes[offset + i] = (byte) quantize(magnitudes[i], precision);
+			}
+		}
+		this.rms[idx] = rms;
+		this.peak[idx] = peak;
+		filled.lazySet(idx, 1); // publishes the stores above
+	}
+
+}
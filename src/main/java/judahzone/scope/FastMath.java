@@ -0,0 +1,56 @@
+package judahzone.scope;
+
+/** Logarithms for the render path.  The exponent is split off the float's bits, the mantissa
+ * reduced to [sqrt(1/2), sqrt(2)) and ln taken from the odd series in s = f / (2 + f), which is
+ * branch-free and vectorizes the same way (see VectorKernels).  On normal positive input ln is
+ * within 3e-7 relative (a few float ulps) and dB within 5e-5 dB over 1e-16..1e8, far below a pixel
+ * or a colormap step, at about a quarter of Math.log10's cost.  Zero, negative, subnormal and
+ * non-finite input falls back to java.lang.Math.
+ * -Dzone.scope.exactmath=true routes everything through java.lang.Math, to compare renders. */
+public final class FastMath {
+
+	public static final boolean EXACT = Boolean.getBoolean("zone.scope.exactmath");
+
+	static final float LN2 = 0.6931472f;
+	static final float LOG10_E = 0.4342945f;
+	/** bits of sqrt(1/2): mantissas at or above it keep their exponent */
+	static final int SQRT_HALF = 0x3f3504f3;
+	static final int ONE = 0x3f800000;
+	static final int MANTISSA = 0x007fffff;
+	/** 2/3, 2/5, 2/7: the series after its first term, 2s */
+	static final float C3 = 2f / 3f, C5 = 2f / 5f, C7 = 2f / 7f;
+
+	private FastMath() { }
+
+	/** natural log */
+	public static float ln(float x) {
+		if (EXACT || !(x >= Float.MIN_NORMAL) || x == Float.POSITIVE_INFINITY)
+			return (float) Math.log(x);
+		int bits = Float.floatToRawIntBits(x) + (ONE - SQRT_HALF);
+		int k = (bits >> 23) - 127;
+		float f = Float.intBitsToFloat((bits & MANTISSA) + SQRT_HALF) - 1f;
+		float s = f / (2f + f);
+		float z = s * s;
+		return k * LN2 + s * (2f + z * (C3 + z * (C5 + z * C7)));
+	}
+
+	public static float log10(float x) {
+		return EXACT ? (float) Math.log10(x) : ln(x) * LOG10_E;
+	}
+
+	/** ln(1 + x), absolute (not relative) accuracy near 0, enough for intensity ramps */
+	public static float log1p(float x) {
+		return EXACT ? (float) Math.log1p(x) : ln(1f + x);
+	}
+
+	/** 10 log10(power) */
+	public static float db(float power) {
+		return 10f * log10(power);
+	}
+
+	/** 20 log10(amplitude) */
+	public static float dbAmplitude(float amplitude) {
+		return 20f * log10(amplitude);
+	}
+
+}
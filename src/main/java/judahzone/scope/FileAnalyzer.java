@@ -0,0 +1,162 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import judahzone.data.Recording;
+import judahzone.data.Transform;
+import judahzone.fx.analysis.Transformer;
+import judahzone.util.RTLogger;
+import judahzone.util.WavConstants;
+
+/** Offline FFT pass over a whole Recording. Frames are split into contiguous ranges that run
+ * in parallel, each worker owning its own Transformer (FFT + window scratch) and writing straight into the db.
+ * Frames start every HOP samples: back to back by default, overlapped with -Dzone.scope.overlap=50|75. */
+public class FileAnalyzer {
+
+	/** audio read into caller buffers */
+	public static interface Source {
+		/** copy length samples starting at sample into left/right from offset (zero past the end) */
+		void read(long sample, float[] left, float[] right, int offset, int length);
+	}
+
+	public static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+	/** percent of each FFT window shared with the next one */
+	public static final int OVERLAP = Math.max(0, Math.min(87, Integer.getInteger("zone.scope.overlap", 0)));
+	/** samples between the starts of successive frames (FFT_SIZE without overlap) */
+	public static final int HOP = Math.max(1, FFT_SIZE * (100 - OVERLAP) / 100);
+
+	private static ExecutorService pool;
+	/** FFT + window scratch, one per worker thread */
+	private static final ThreadLocal<Transformer> FFT = ThreadLocal.withInitial(() -> new Transformer(t -> { }));
+	/** sliding window + FFT input, one pair per worker thread */
+	private static final ThreadLocal<float[][]> WINDOW = ThreadLocal.withInitial(() -> new float[4][FFT_SIZE]);
+
+	private static synchronized ExecutorService pool() {
+		if (pool == null)
+			pool = Executors.newFixedThreadPool(WORKERS, r -> {
+				Thread t = new Thread(r, FileAnalyzer.class.getSimpleName());
+				t.setDaemon(true);
+				return t;
+			});
+		return pool;
+	}
+
+	static void execute(Runnable job) {
+		pool().execute(job);
+	}
+
+	/** analyze one frame with the calling worker's private Transformer */
+	static Transform analyze(float[] left, float[] right) {
+		return FFT.get().analyze(left, right);
+	}
+
+	/** @return number of whole FFT_SIZE windows starting every HOP within samples */
+	public static int frames(long samples) {
+		return samples < FFT_SIZE ? 0 : (int) Math.min(Integer.MAX_VALUE, (samples - FFT_SIZE) / HOP + 1);
+	}
+
+	public static int frames(Recording rec) {
+		return frames((long) rec.size() * (FFT_SIZE / WavConstants.CHUNKS));
+	}
+
+	/** analyze a window already in the calling worker's input scratch */
+	static Transform analyze(float[] window, int from, float[] other, int otherFrom) {
+		float[][] scratch = WINDOW.get();
+		System.arraycopy(window, from, scratch[2], 0, FFT_SIZE);
+		System.arraycopy(other, otherFrom, scratch[3], 0, FFT_SIZE);
+		return analyze(scratch[2], scratch[3]);
+	}
+
+	public static ColumnDb analyze(Recording rec, String name) {
+		ColumnDb db = new ColumnDb(frames(rec));
+		analyze(rec, db, name);
+		return db;
+	}
+
+	public static void analyze(Recording rec, FrameDb db, String name) {
+		analyze((sample, left, right, offset, length) -> {
+			float[][] snippet = rec.getSamples((int) sample, length); // Recording only copies out
+			System.arraycopy(snippet[0], 0, left, offset, length);
+			System.arraycopy(snippet[1], 0, right, offset, length);
+		}, db, name);
+	}
+
+	/** FFT frames in a disk-backed decode */
+	public static int frames(PcmFile pcm) {
+		return frames(pcm.length());
+	}
+
+	/** blocks until every frame of db is filled (or a worker fails) */
+	public static void analyze(Source audio, FrameDb db, String name) {
+		final int frames = db.size();
+		final int workers = Math.max(1, Math.min(WORKERS, frames));
+		final int span = (frames + workers - 1) / workers;
+
+		long start = System.currentTimeMillis();
+		List<Future<Long>> jobs = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			final int from = i * span;
+			final int to = Math.min(frames, from + span);
+			if (from >= to)
+				break;
+			jobs.add(pool().submit(() -> range(audio, db, from, to)));
+		}
+
+		StringBuilder perWorker = new StringBuilder();
+		for (int i = 0; i < jobs.size(); i++) {
+			try {
+				long millis = jobs.get(i).get();
+				perWorker.append(i == 0 ? " [" : ", ").append(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				RTLogger.warn(FileAnalyzer.class, e);
+				return;
+			} catch (ExecutionException e) {
+				RTLogger.warn(FileAnalyzer.class, e.getCause());
+			}
+		}
+		if (!jobs.isEmpty())
+			perWorker.append("]");
+		long end = System.currentTimeMillis();
+		System.out.println(name + " frames: " + frames + " FFT compute millis: " + (end - start)
+				+ " workers: " + jobs.size() + perWorker);
+	}
+
+	/** analyze frames [from, to) with the worker's Transformer, @return elapsed millis */
+	private static long range(Source audio, FrameDb db, int from, int to) {
+		ScopeEvents.FftBatch event = new ScopeEvents.FftBatch();
+		event.begin();
+		long start = System.currentTimeMillis();
+		final int keep = FFT_SIZE - HOP;
+		float[][] window = WINDOW.get();
+		float[] left = window[0], right = window[1];
+		audio.read((long) from * HOP, left, right, 0, FFT_SIZE);
+		for (int frame = from; frame < to; frame++) {
+			if (frame > from) { // slide: keep the overlap, read only the new hop
+				System.arraycopy(left, HOP, left, 0, keep);
+				System.arraycopy(right, HOP, right, 0, keep);
+				audio.read((long) frame * HOP + keep, left, right, keep, HOP);
+			}
+			db.set(frame, analyze(left, 0, right, 0)); // the Transformer gets a copy it may window in place
+		}
+		batch(event, from, to);
+		return System.currentTimeMillis() - start;
+	}
+
+	/** commit an FFT batch event begun before frames [from, to) were analyzed */
+	static void batch(ScopeEvents.FftBatch event, int from, int to) {
+		if (!event.shouldCommit())
+			return;
+		event.from = from;
+		event.frames = to - from;
+		event.commit();
+	}
+
+}
@@ -0,0 +1,227 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import judahzone.data.Recording;
+import judahzone.util.Constants;
+import judahzone.util.RTLogger;
+
+/** Progressive FILE mode load: decodes the file a block at a time and hands each block of FFT frames
+ * to the FileAnalyzer workers as soon as it is read, so the TimeDomain paints columns while the rest
+ * of the file is still decoding.  Only formats with a known length at the engine's sample rate stream,
+ * everything else goes through MP3.load() + FileAnalyzer.  With tape(), the same decoded samples
+ * also fill the playback Recording, so the file is decoded once. */
+public class FileStream implements Closeable {
+
+	public static interface Listener {
+		/** frames [from, to) of the db are ready (called from an analysis worker) */
+		void frames(int from, int to);
+	}
+
+	/** FFT frames per decode/analysis block */
+	static final int BLOCK = 32;
+
+	private final AudioInputStream in;
+	private final int channels;
+	private final ColumnDb db;
+	private volatile boolean closed;
+	/** playback samples, if kept */
+	private Tape tape;
+	private Recording recording;
+
+	private FileStream(AudioInputStream in, int channels, int frames) {
+		this.in = in;
+		this.channels = channels;
+		this.db = new ColumnDb(frames);
+	}
+
+	/** @return a progressive decoder over f, or null if f can't be streamed
+	 * (unknown length, resampling or an unsupported encoding) */
+	public static FileStream open(File f) {
+		AudioInputStream raw = null;
+		try {
+			raw = AudioSystem.getAudioInputStream(f);
+			AudioFormat src = raw.getFormat();
+			int channels = src.getChannels();
+			if (channels < 1 || channels > 2 || Math.abs(src.getSampleRate() - Constants.sampleRate()) > 1f) {
+				raw.close();
+				return null;
+			}
+			AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, src.getSampleRate(),
+					16, channels, channels * 2, src.getSampleRate(), false);
+			AudioInputStream in = AudioSystem.getAudioInputStream(pcm, raw);
+			long length = in.getFrameLength();
+			if (length == AudioSystem.NOT_SPECIFIED)
+				length = raw.getFrameLength();
+			if (length < FFT_SIZE) {
+				in.close();
+				return null;
+			}
+			return new FileStream(in, channels, FileAnalyzer.frames(length));
+		} catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+			if (raw != null)
+				try { raw.close(); } catch (IOException ignored) { }
+			return null;
+		}
+	}
+
+	/** sized from the header up front, filled in as blocks complete (holes until then) */
+	public ColumnDb getDb() {
+		return db;
+	}
+
+	/** also keep the decoded audio for playback (on the heap), call before run() */
+	public void tape() {
+		tape = new Tape();
+	}
+
+	/** @return the whole file's playback audio after run(), null without tape() or if closed
+	 * before the end */
+	public Recording getRecording() {
+		return recording;
+	}
+
+	/** Decode on the calling thread, analyze on FileAnalyzer workers. Blocks until every
+	 * submitted block is analyzed.  @param name for the load stats, null to skip them
+	 * @return number of frames decoded */
+	public int run(String name, Listener listener) {
+		final int frameBytes = channels * 2;
+		final byte[] bytes = new byte[FFT_SIZE * frameBytes];
+		final int permits = FileAnalyzer.WORKERS * 2; // bounds decoded-but-unanalyzed audio
+		final Semaphore inFlight = new Semaphore(permits);
+		final int hop = FileAnalyzer.HOP;
+		final int keep = FFT_SIZE - hop;
+		final int span = (BLOCK - 1) * hop + FFT_SIZE;
+		long start = System.currentTimeMillis();
+		int frame = 0;
+		float[] carryLeft = null, carryRight = null; // previous block, its last keep samples overlap this one
+		int carryAt = 0;
+		try {
+			while (frame < db.size() && !closed) {
+				final int from = frame;
+				final int max = Math.min(BLOCK, db.size() - from);
+				// samples of frames [from, from + max): frame i of the block starts at i * hop
+				final float[] left = new float[span];
+				final float[] right = channels == 1 ? left : new float[span];
+				int filled = 0;
+				if (carryLeft != null && keep > 0) {
+					System.arraycopy(carryLeft, carryAt, left, 0, keep);
+					if (channels == 2)
+						System.arraycopy(carryRight, carryAt, right, 0, keep);
+					filled = keep;
+				}
+				int count = 0;
+				while (count < max) {
+					int need = count * hop + FFT_SIZE - filled;
+					if (!decode(bytes, left, right, filled, need))
+						break;
+					filled += need;
+					count++;
+				}
+				if (count == 0)
+					break;
+				carryLeft = left;
+				carryRight = right;
+				carryAt = count * hop;
+				final int to = from + count;
+				inFlight.acquire();
+				FileAnalyzer.execute(() -> {
+					try {
+						ScopeEvents.FftBatch event = new ScopeEvents.FftBatch();
+						event.begin();
+						for (int i = from; i < to; i++) {
+							int at = (i - from) * hop;
+							db.set(i, FileAnalyzer.analyze(left, at, right, at));
+						}
+						FileAnalyzer.batch(event, from, to);
+						listener.frames(from, to);
+					} catch (Throwable t) {
+						RTLogger.warn(FileStream.class, t);
+					} finally {
+						inFlight.release();
+					}
+				});
+				frame = to;
+				if (count < max)
+					break; // truncated/short file
+			}
+			if (tape != null) { // past the last frame, for playback only
+				final float[] left = new float[FFT_SIZE];
+				final float[] right = channels == 1 ? left : new float[FFT_SIZE];
+				boolean more = true;
+				while (more)
+					more = decode(bytes, left, right, 0, FFT_SIZE);
+				if (!closed)
+					recording = tape.finish();
+			}
+			inFlight.acquire(permits); // drain
+			inFlight.release(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			close();
+		}
+		if (name != null)
+			RTLogger.log(FileStream.class, name + " streamed frames: " + frame + " of " + db.size()
+					+ " millis: " + (System.currentTimeMillis() - start));
+		return frame;
+	}
+
+	/** read samples sample frames into left/right from offset (and the tape), @return false at the
+	 * end of the stream, what was read of a short last chunk is still converted */
+	private boolean decode(byte[] bytes, float[] left, float[] right, int offset, int samples) {
+		final int frameBytes = channels * 2;
+		while (samples > 0) {
+			int chunk = Math.min(samples, bytes.length / frameBytes);
+			int got = readFully(bytes, chunk * frameBytes) / frameBytes;
+			int b = 0;
+			for (int i = 0; i < got; i++) {
+				left[offset + i] = (short) ((bytes[b++] & 0xff) | (bytes[b++] << 8)) / 32768f;
+				if (channels == 2)
+					right[offset + i] = (short) ((bytes[b++] & 0xff) | (bytes[b++] << 8)) / 32768f;
+			}
+			if (tape != null)
+				tape.append(left, right, offset, got);
+			if (got < chunk)
+				return false;
+			offset += chunk;
+			samples -= chunk;
+		}
+		return true;
+	}
+
+	/** @return bytes read, less than length at the end of the stream or on close */
+	private int readFully(byte[] bytes, int length) {
+		int total = 0;
+		try {
+			while (total < length && !closed) {
+				int read = in.read(bytes, total, length - total);
+				if (read < 0)
+					break;
+				total += read;
+			}
+		} catch (IOException e) {
+			RTLogger.warn(this, e);
+		}
+		return total;
+	}
+
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		try { in.close(); } catch (IOException ignored) { }
+	}
+
+}
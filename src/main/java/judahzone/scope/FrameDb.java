@@ -0,0 +1,39 @@
+package judahzone.scope;
+
+import judahzone.data.Transform;
+
+/** Index-based view over analyzed frames (spectral magnitudes + RMS/peak) that the
+ * TimeDomain widgets read from, whether the frames live on heap or in a mapped cache. */
+public interface FrameDb {
+
+	int size();
+
+	/** false for holes (live buffer, partially loaded files) */
+	boolean has(int idx);
+
+	/** magnitudes per frame, 0 until known */
+	int bins();
+
+	/** @return the magnitudes of idx: the backing array if there is one, otherwise scratch
+	 * (length bins()) filled in. Treat as read-only. */
+	float[] magnitudes(int idx, float[] scratch);
+
+	float rms(int idx);
+
+	float peak(int idx);
+
+	/** store a freshly analyzed frame, read-only stores throw UnsupportedOperationException */
+	void set(int idx, Transform t);
+
+	/** number of level-of-detail entries, see level() */
+	default int levels() {
+		return 1;
+	}
+
+	/** @return a view where index i covers frames [i * 2^k, (i + 1) * 2^k), max-aggregated,
+	 * or null if level k isn't kept (level 0 is this db) */
+	default FrameDb level(int k) {
+		return k == 0 ? this : null;
+	}
+
+}
@@ -0,0 +1,131 @@
+package judahzone.scope;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+import judahzone.data.Transform;
+
+/** Paces live Transforms onto the EDT: the analysis thread drops each result into a lock-free
+ * single-producer ring, a Swing Timer drains it once per display tick.  Every pending frame goes
+ * to the column consumer (TimeDomain), only the newest one to the latest consumer (Spectrometer).
+ * If the EDT falls a whole ring behind, new frames are dropped and counted.  Each slot carries
+ * its callback and analysis timestamps for the Latency stages. */
+public class FrameScheduler implements Closeable {
+
+	/** -Dzone.scope.fps=40 */
+	public static final int DEFAULT_FPS = Integer.getInteger("zone.scope.fps", 40);
+	private static final int CAPACITY = 256; // power of 2
+	private static final int MASK = CAPACITY - 1;
+
+	private final Transform[] ring = new Transform[CAPACITY];
+	/** audio callback stamp per slot (0: unknown) */
+	private final long[] born = new long[CAPACITY];
+	/** Transformer result stamp per slot */
+	private final long[] analyzed = new long[CAPACITY];
+	/** next slot to read, written by the EDT only */
+	private final AtomicLong head = new AtomicLong();
+	/** next slot to write, written by the producer only */
+	private final AtomicLong tail = new AtomicLong();
+	private final Consumer<Transform> column;
+	private final Consumer<Transform> latest;
+	private final Timer timer;
+	private final Latency latency = new Latency(this);
+
+	/** producer-side count of frames lost to a full ring */
+	private volatile long dropped;
+	/** frames drained but not shown in the Spectrometer (an older frame in the same tick) */
+	private long coalesced;
+	/** dropped as of the last drain, for the skipped-frames event */
+	private long reported;
+
+	public FrameScheduler(Consumer<Transform> column, Consumer<Transform> latest) {
+		this.column = column;
+		this.latest = latest;
+		timer = new Timer(1000 / Math.max(1, DEFAULT_FPS), e -> drain());
+		timer.setCoalesce(true);
+	}
+
+	/** analysis thread: enqueue without locking or allocating. @return false if the ring was full */
+	public boolean offer(Transform t) {
+		final long now = System.nanoTime();
+		final long stamp = latency.analyzed(now);
+		final long at = tail.get();
+		if (at - head.get() >= CAPACITY) {
+			dropped++; // single producer
+			return false;
+		}
+		final int slot = (int) at & MASK;
+		ring[slot] = t;
+		born[slot] = stamp;
+		analyzed[slot] = now;
+		tail.lazySet(at + 1);
+		return true;
+	}
+
+	/** EDT: hand every pending frame to the TimeDomain, the newest to the Spectrometer */
+	void drain() {
+		long at = head.get();
+		final long end = tail.get();
+		if (at == end)
+			return;
+		final long skipped = end - at - 1;
+		coalesced += skipped;
+		final long lost = dropped - reported;
+		if (skipped > 0 || lost > 0) {
+			reported += lost;
+			ScopeEvents.FramesSkipped event = new ScopeEvents.FramesSkipped();
+			if (event.shouldCommit()) {
+				event.dropped = lost;
+				event.coalesced = skipped;
+				event.commit();
+			}
+		}
+		final long now = System.nanoTime();
+		Transform last = null;
+		long newest = 0;
+		for (; at < end; at++) {
+			int slot = (int) at & MASK;
+			last = ring[slot];
+			newest = born[slot];
+			ring[slot] = null;
+			latency.queued(analyzed[slot], now);
+			column.accept(last);
+		}
+		head.lazySet(at);
+		latest.accept(last);
+		latency.delivered(newest, now);
+	}
+
+	public void setFps(int fps) {
+		timer.setDelay(1000 / Math.max(1, fps));
+	}
+
+	public int getFps() {
+		return 1000 / Math.max(1, timer.getDelay());
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	public Latency getLatency() {
+		return latency;
+	}
+
+	public void start() {
+		timer.start();
+	}
+
+	@Override
+	public void close() {
+		timer.stop();
+	}
+
+}
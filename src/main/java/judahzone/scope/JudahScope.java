@@ -1,7 +1,5 @@
 package judahzone.scope;
 
-import static judahzone.util.WavConstants.FFT_SIZE;
-
 import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.GridLayout;
@@ -12,12 +10,19 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ButtonGroup;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JToggleButton;
 import javax.swing.SwingUtilities;
@@ -27,7 +32,6 @@ import judahzone.data.Asset;
 import judahzone.data.Recording;
 import judahzone.data.Transform;
 import judahzone.api.PlayAudio;
-import judahzone.fx.analysis.Transformer;
 import judahzone.gui.Floating;
 import judahzone.gui.Gui;
 import judahzone.gui.Nimbus;
@@ -36,15 +40,15 @@ import judahzone.javax.JavaxOut;
 import judahzone.util.Constants;
 import judahzone.util.Folders;
 import judahzone.util.MP3;
-import judahzone.util.Memory;
 import judahzone.util.RTLogger;
 import judahzone.util.Services;
 import judahzone.util.Threads;
-import judahzone.util.WavConstants;
 import judahzone.widgets.PlayGui;
 
 /** Provides a Spectrometer, a Spectrogram and RMSmeter, listening to mixer's selected channels
- * (on a circular 20 sec buffer) or analyze an audio file from disk */
+ * (on a circular 20 sec buffer) or analyze an audio file from disk.  Extra live inputs (mixer
+ * channels, or L/R of the main input) get their own ScopeLane, see addLane(); the Spectrometer
+ * can also show the main input's L/R or mid/side spectra (StereoTap). */
 public class JudahScope extends JPanel implements Floating, Closeable {
 
 	public static enum Mode{ LIVE_ROLLING, LIVE_STOPPED, FILE }
@@ -53,6 +57,9 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	private static final int VERTICAL_SPACING = 26;
 	public static final Dimension SLIDER = new Dimension(60, 24);
 	public static final Dimension FEEDBACK = new Dimension(190, MENU_HEIGHT);
+	private static final Dimension SOURCE = new Dimension(100, 24);
+	/** Spectrometer sources besides the lanes */
+	private static final String MIX = "Mix", LEFT_RIGHT = "L/R", MID_SIDE = "M/S";
 
 	private final boolean STANDALONE;
 	private int w;
@@ -61,10 +68,16 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	private TimeDomain timeDomain;
 
 	// Data sources
-	private Transform[] liveDb;
-	private Transform[] fileDb;
+	private FrameDb liveDb;
+	/** off-heap minutes of live frames, browsed while LIVE_STOPPED (null if disabled) */
+	private final LiveHistory history = LiveHistory.MINUTES > 0 ? new LiveHistory(LiveHistory.MINUTES) : null;
+	private FrameDb fileDb;
 	private Recording fileRecording;
 	private File file;
+	/** magnitudes copy-out for click() */
+	private float[] clicked = new float[0];
+	/** in-progress progressive load, if any */
+	private volatile FileStream streaming;
 
 	/** live JavaSound input for STANDALONE mode*/
 	private JavaxIn javaxIn;
@@ -74,14 +87,36 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	/** shared generic audio player GUI wrapper */
 	private PlayGui boombox;
 
-	private final Transformer analyzer = new Transformer(transform -> {
-    	SwingUtilities.invokeLater(() -> {
-    		if (mode == Mode.LIVE_ROLLING)
-    			timeDomain.analyze(transform);
-
-    		spectrum.analyze(transform);
-    	});
-    });
+	/** the lane feeding the Spectrometer, null for the main mix */
+	private ScopeLane shown;
+	/** Spectrometer shows the stereo tap's L/R or M/S pair */
+	private boolean stereoView;
+
+	/** paces live results onto the EDT: all columns to the TimeDomain, newest to the Spectrometer */
+	private final FrameScheduler scheduler = new FrameScheduler(transform -> {
+		if (mode != Mode.LIVE_ROLLING)
+			return;
+		timeDomain.analyze(transform);
+		if (history != null)
+			history.append(transform);
+	}, transform -> {
+		if (stereoView)
+			showStereo();
+		else if (shown == null)
+			spectrum.analyze(transform);
+	});
+
+	private final LiveTransformer analyzer = new LiveTransformer(scheduler::offer, scheduler.getLatency());
+	/** per-channel spectra of the main input, one complex FFT per frame, tapped while shown */
+	private final StereoTap stereo = new StereoTap();
+	/** the stereo frame the Spectrometer shows (and may redraw), given back for the next one */
+	private StereoTap.Frame drawn;
+	/** extra live inputs, each with its own TimeDomain lane (EDT) */
+	private final List<ScopeLane> lanes = new ArrayList<>();
+	private final Box laneBox = new Box(BoxLayout.Y_AXIS);
+	private final JComboBox<Object> source = new JComboBox<>(new Object[] { MIX, LEFT_RIGHT, MID_SIDE });
+	/** last resized() height, lanes re-split it */
+	private int lastHeight;
 
 	// Controls
 	private JToggleButton liveBtn;
@@ -166,9 +201,10 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	            setMode(Mode.FILE);   // normal mode switch
 	    });
 	    // Initialize data and displays
-	    liveDb = new Transform[w / 2]; // Initial live buffer
+	    liveDb = new TransformDb(w / 2); // Initial live buffer
 	    timeDomain = new TimeDomain(this, w, liveDb);
 	    spectrum = new Spectrometer(new Dimension(w, 300), liveBtn);
+	    spectrum.setLatency(scheduler.getLatency());
 	    feedback = new JLabel(" (load) ", JLabel.CENTER);
 	    feedback.addMouseListener(new MouseAdapter() {
 	        @Override public void mouseClicked(MouseEvent e) { load(); }});
@@ -182,6 +218,9 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	    feedbackWrap.setLayout(new BoxLayout(feedbackWrap, BoxLayout.X_AXIS));
 	    updateFeedbackWrap();
 	    menu.add(feedbackWrap);
+	    source.setToolTipText("Spectrometer source: main mix, L/R or mid/side of it, or a lane");
+	    source.addActionListener(l -> showSource(source.getSelectedItem()));
+	    menu.add(Gui.resize(source, SOURCE));
 	    menu.add(spectrum.getControls());
 	    menu.add(timeDomain.getControls());
 	    menu.add(boombox);
@@ -193,10 +232,12 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	    content.add(spectrum);
 	    content.add(Box.createVerticalStrut(6));
 	    content.add(Gui.wrap(timeDomain));
+	    content.add(laneBox);
 	    content.add(Box.createVerticalGlue());
 
 	    setLayout(new GridLayout(1, 1));
 	    add(Gui.wrap(content));
+	    scheduler.start();
 	    setMode(Mode.LIVE_ROLLING);
 	}
 
@@ -217,9 +258,13 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	@Override
 	public void resized(int width, int height) {
 	    w = width;
-	    int spectrometerHeight = Math.max(100, height - MENU_HEIGHT - TimeDomain.TOTAL_HEIGHT - VERTICAL_SPACING);
+	    lastHeight = height;
+	    int lanesHeight = laneBox.isVisible() ? lanes.size() * TimeDomain.TOTAL_HEIGHT : 0;
+	    int spectrometerHeight = Math.max(100, height - MENU_HEIGHT - TimeDomain.TOTAL_HEIGHT - lanesHeight - VERTICAL_SPACING);
 	    spectrum.resized(w, spectrometerHeight);
 	    timeDomain.resize(w);
+	    for (ScopeLane lane : lanes)
+	        lane.getTimeDomain().resize(w);
 	    Dimension newSize = new Dimension(width, height);
 	    setPreferredSize(newSize);
 	    setSize(newSize);
@@ -230,49 +275,170 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	public void loadFile(File f) {
         if (f == null) return;
 
-        // remember file so feedback and setMode can show the correct name
-        this.file = f;
-        if (!Memory.checkFFT(f)) // user cancelled due to not enough memory
-        	return;
+        // spectra stream or decode to disk, never holding the whole PCM: the memory check
+        // only decides whether the playback audio is decoded onto the heap as well
+        final boolean playback = fitsInHeap(f);
+        if (!playback && JOptionPane.showConfirmDialog(this, f.getName()
+                + " is too large to play back from memory.\nOpen it without playback?",
+                "Open without playback", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
+            return;
+
+        if (streaming != null)
+            streaming.close(); // abandon a previous progressive load
 
         Threads.execute(() -> {
-            fileRecording = MP3.load(f);
-            int frames = fileRecording.size() / WavConstants.CHUNKS;
-            fileDb = new Transform[frames];
-            long start = System.currentTimeMillis();
-            for (int frame = 0; frame < frames; frame++) {
-                int idx = frame * FFT_SIZE;
-                float[][] snippet = fileRecording.getSamples(idx, FFT_SIZE);
-                fileDb[frame] = analyzer.analyze(snippet[0], snippet[1]);
+            ScopeEvents.FileLoad event = new ScopeEvents.FileLoad();
+            event.begin();
+            FrameDb cached = SpectralCache.load(f);
+            if (cached != null) {
+                // previously analyzed: mapped from disk, only the playback audio decodes
+                Pyramid db = new Pyramid(cached);
+                SwingUtilities.invokeLater(() -> showFile(f, db, null));
+                levels(f, db);
+                loaded(event, f, "cache", db.size(), 0);
+                playback(f, db, playback ? MP3.load(f) : null);
+                return;
             }
-            long end = System.currentTimeMillis();
-            System.out.println(f.getName() + " frames: " + frames + " FFT compute millis: " + (end - start));
-            boombox.setRecording(new Asset(f.getName(), f, fileRecording, fileRecording.size() * Constants.bufSize(),
-                    Asset.Category.USER));
-
-            SwingUtilities.invokeLater(() -> {
-                // If already viewing a file, refresh the TimeDomain and wiring so the new file
-                // and filename show immediately. Otherwise switch into FILE mode (normal path).
-                if (mode == Mode.FILE) {
-                    // update TimeDomain data and playback wiring in-place
-                    timeDomain.setData(fileDb, fileRecording);
-                    try { out.setPlayed(boombox); } catch (Throwable t) { RTLogger.warn(this, t); }
-                    timeDomain.setPlaya(boombox);
-                    setFeedback();
-                    repaint();
-                } else {
-                    setMode(Mode.FILE);
+
+            FileStream stream = FileStream.open(f);
+            if (stream == null) {
+                // unknown length: decode once to a mapped temp file, then parallel FFT
+                long decode = System.nanoTime();
+                PcmFile pcm = PcmFile.decode(f);
+                decode = System.nanoTime() - decode;
+                if (pcm != null) {
+                    try (pcm) {
+                        ColumnDb frames = new ColumnDb(FileAnalyzer.frames(pcm));
+                        FileAnalyzer.analyze(pcm, frames, f.getName());
+                        Pyramid db = new Pyramid(frames);
+                        SwingUtilities.invokeLater(() -> showFile(f, db, null));
+                        levels(f, db);
+                        loaded(event, f, "disk", db.size(), decode);
+                        SpectralCache.save(f, frames);
+                        playback(f, db, playback ? pcm.toRecording() : null); // not decoded again
+                    }
+                    return;
                 }
-            });
+                if (!playback) { // only MP3.load reads it, and it won't fit
+                    RTLogger.log(this, f.getName() + ": not opened, it needs a whole-file decode that won't fit in memory");
+                    return;
+                }
+                // whole-file decode, then parallel FFT
+                decode = System.nanoTime();
+                Recording rec = MP3.load(f);
+                decode = System.nanoTime() - decode;
+                ColumnDb frames = FileAnalyzer.analyze(rec, f.getName());
+                Pyramid db = new Pyramid(frames);
+                SwingUtilities.invokeLater(() -> showFile(f, db, rec));
+                levels(f, db);
+                loaded(event, f, "decode", db.size(), decode);
+                SpectralCache.save(f, frames);
+                return;
+            }
+
+            // progressive: show the (empty) db right away, paint blocks as they are analyzed
+            streaming = stream;
+            Pyramid db = new Pyramid(stream.getDb());
+            SwingUtilities.invokeLater(() -> showFile(f, db, null));
+            if (playback)
+                stream.tape(); // playback audio fills from the same decode
+            int decoded = stream.run(f.getName(), (from, to) -> SwingUtilities.invokeLater(() -> {
+                if (fileDb == db && mode == Mode.FILE)
+                    timeDomain.update(from, to);
+            }));
+            if (streaming == stream)
+                streaming = null;
+            if (decoded == 0)
+                return;
+            Recording rec = stream.getRecording(); // null if abandoned, or without playback
+            if (rec != null || !playback)
+                playback(f, db, rec);
+            levels(f, db);
+            loaded(event, f, "stream", decoded, 0);
+            SpectralCache.save(f, stream.getDb()); // skipped if the stream was abandoned part way
         });
     }
 
+	/** playback decodes the whole file onto the heap as floats: does that fit with headroom?
+	 * Exact frames when the header has them, else the file size at about 10:1 compression. */
+	private static boolean fitsInHeap(File f) {
+	    long frames = AudioSystem.NOT_SPECIFIED;
+	    try {
+	        frames = AudioSystem.getAudioFileFormat(f).getFrameLength();
+	    } catch (UnsupportedAudioFileException | IOException e) { } // estimate from the size
+	    if (frames <= 0)
+	        frames = f.length() * 10 / 4; // 16 bit stereo
+	    Runtime rt = Runtime.getRuntime();
+	    long available = rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+	    return frames * 2 * Float.BYTES < available / 2;
+	}
+
+	/** hand f's playback audio to db's view, null if it didn't fit in memory (view only) */
+	private void playback(File f, FrameDb db, Recording rec) {
+	    if (rec == null) {
+	        RTLogger.log(this, f.getName() + ": spectra only, not enough memory for playback");
+	        return;
+	    }
+	    SwingUtilities.invokeLater(() -> setRecording(f, db, rec));
+	}
+
+	private static void loaded(ScopeEvents.FileLoad event, File f, String source, int frames, long decode) {
+	    if (!event.shouldCommit())
+	        return;
+	    event.file = f.getName();
+	    event.source = source;
+	    event.frames = frames;
+	    event.bytes = f.length();
+	    event.decode = decode;
+	    event.commit();
+	}
+
+	/** build zoomed-out levels for db, then redraw if it is still showing */
+	private void levels(File f, Pyramid db) {
+	    db.build(f.getName());
+	    SwingUtilities.invokeLater(() -> {
+	        if (fileDb == db && mode == Mode.FILE)
+	            timeDomain.generate();
+	    });
+	}
+
+	/** Swap in a newly loaded file (rec is null while a progressive load is still decoding audio). */
+	private void showFile(File f, FrameDb db, Recording rec) {
+	    file = f; // feedback names it from now on
+	    fileDb = db;
+	    fileRecording = null;
+	    setRecording(f, db, rec);
+	    // If already viewing a file, refresh the TimeDomain and wiring so the new file
+	    // and filename show immediately. Otherwise switch into FILE mode (normal path).
+	    if (mode == Mode.FILE) {
+	        // update TimeDomain data and playback wiring in-place
+	        timeDomain.setData(fileDb, fileRecording);
+	        try { out.setPlayed(boombox); } catch (Throwable t) { RTLogger.warn(this, t); }
+	        timeDomain.setPlaya(boombox);
+	        setFeedback();
+	        repaint();
+	    } else {
+	        setMode(Mode.FILE);
+	    }
+	}
+
+	/** Playback audio for db arrived (ignored if another file was loaded since). */
+	private void setRecording(File f, FrameDb db, Recording rec) {
+	    if (rec == null || fileDb != db)
+	        return;
+	    fileRecording = rec;
+	    boombox.setRecording(new Asset(f.getName(), f, rec, rec.size() * Constants.bufSize(),
+	            Asset.Category.USER));
+	    if (mode == Mode.FILE)
+	        timeDomain.setTape(rec);
+	}
+
 
 	public void load() {
-	    file = Folders.choose(Folders.getLoops());
-	    if (file == null) return;
+	    File chosen = Folders.choose(Folders.getLoops());
+	    if (chosen == null) return;
 	    // delegate to new loader
-	    loadFile(file);
+	    loadFile(chosen);
 	}
 
 
@@ -284,13 +450,109 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	    updateFeedbackWrap();
 	}
 
-	public void click(Transform t) {
-	    if (t == null)
+	/** show db[idx] in the Spectrometer (caret clicks, playback head) */
+	public void click(FrameDb db, int idx) {
+	    if (db == null || idx < 0 || idx >= db.size() || !db.has(idx)) {
 	        spectrum.clear();
+	        return;
+	    }
+	    int bins = db.bins();
+	    if (clicked.length != bins)
+	        clicked = new float[bins];
+	    spectrum.analyze(db.magnitudes(idx, clicked), db.rms(idx));
+	}
+
+	/** Analyze another live input beside the main mix, in its own TimeDomain lane (EDT).
+	 * @param tap true: fed the main input (e.g. LEFT and RIGHT lanes split a stereo input),
+	 *        false: the host feeds lane.getAnalyzer() from that channel's audio callback */
+	public ScopeLane addLane(String name, ScopeLane.Input input, boolean tap) {
+	    ScopeLane lane = new ScopeLane(this, name, input, tap, w);
+	    lanes.add(lane);
+	    laneBox.add(Gui.wrap(lane.getTimeDomain()));
+	    source.addItem(lane);
+	    taps();
+	    relayout();
+	    return lane;
+	}
+
+	public void removeLane(ScopeLane lane) {
+	    int idx = lanes.indexOf(lane);
+	    if (idx < 0)
+	        return;
+	    lanes.remove(idx);
+	    laneBox.remove(idx);
+	    if (shown == lane)
+	        source.setSelectedIndex(0);
+	    source.removeItem(lane);
+	    taps();
+	    lane.close();
+	    relayout();
+	}
+
+	public List<ScopeLane> getLanes() {
+	    return List.copyOf(lanes);
+	}
+
+	private void taps() {
+	    List<LiveTransformer> taps = new ArrayList<>();
+	    for (ScopeLane lane : lanes)
+	        if (lane.isTap())
+	            taps.add(lane.getAnalyzer());
+	    if (stereoView)
+	        taps.add(stereo);
+	    analyzer.setTaps(taps.toArray(new LiveTransformer[0]));
+	}
+
+	private void relayout() {
+	    if (lastHeight > 0)
+	        resized(w, lastHeight);
+	    else {
+	        revalidate();
+	        repaint();
+	    }
+	}
+
+	/** source selector: MIX, LEFT_RIGHT, MID_SIDE or a ScopeLane */
+	private void showSource(Object selected) {
+	    shown = selected instanceof ScopeLane lane ? lane : null;
+	    stereoView = LEFT_RIGHT.equals(selected) || MID_SIDE.equals(selected);
+	    if (MID_SIDE.equals(selected))
+	        stereo.setViews(StereoFFT.View.MID, StereoFFT.View.SIDE);
 	    else
+	        stereo.setViews(StereoFFT.View.LEFT, StereoFFT.View.RIGHT);
+	    taps();
+	    spectrum.clear();
+	    spectrum.repaint();
+	}
+
+	/** the stereo tap's newest pair as bars (left or mid) and a line (right or side) */
+	private void showStereo() {
+	    StereoTap.Frame f = stereo.take();
+	    if (f == null)
+	        return;
+	    spectrum.analyze(f.bars, f.rms, f.overlay);
+	    if (drawn != null)
+	        stereo.give(drawn);
+	    drawn = f;
+	}
+
+	/** a lane's newest frame, for the Spectrometer if that lane is selected */
+	void latest(ScopeLane lane, Transform t) {
+	    if (lane == shown && mode == Mode.LIVE_ROLLING)
 	        spectrum.analyze(t);
 	}
 
+	/** live callback-to-pixels timings */
+	public Latency getLatency() {
+	    return scheduler.getLatency();
+	}
+
+	/** show/hide the latency overlay on the Spectrometer */
+	public void setStats(boolean show) {
+	    scheduler.getLatency().setOverlay(show);
+	    spectrum.repaint();
+	}
+
 	public boolean isActive() {
 	    return mode == Mode.LIVE_ROLLING;
 	}
@@ -345,6 +607,8 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	        case LIVE_ROLLING:
 	            timeDomain.setData(liveDb, null);
 	            timeDomain.fullRange();
+	            for (ScopeLane lane : lanes)
+	                lane.rewind();
 	            if (!liveBtn.isSelected()) liveBtn.setSelected(true);
 
 	            if (STANDALONE && javaxIn != null) {
@@ -356,8 +620,12 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	            break;
 
 	        case LIVE_STOPPED:
-	            timeDomain.setData(liveDb, null);
 	            if (!stopBtn.isSelected()) stopBtn.setSelected(true);
+	            if (history != null && history.size() > 0) {
+	                timeDomain.setHistory(history.snapshot()); // zoom/scroll back through the history
+	                break;
+	            }
+	            timeDomain.setData(liveDb, null);
 	            // restore the last live head position so the stopped view paints that head
 	            if (lastLiveHead >= 0) {
 	                timeDomain.setPositionIndex(lastLiveHead);
@@ -375,6 +643,12 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	    }
 
 	    boombox.setVisible(newMode == Mode.FILE);
+	    source.setVisible(newMode != Mode.FILE);
+	    boolean showLanes = newMode != Mode.FILE;
+	    if (laneBox.isVisible() != showLanes) {
+	        laneBox.setVisible(showLanes); // lanes are live only
+	        relayout();
+	    }
 	    setFeedback();
 	    repaint();
 	}
@@ -382,13 +656,18 @@ public class JudahScope extends JPanel implements Floating, Closeable {
 	public void close()  {
 	    if (mode == Mode.LIVE_ROLLING)
 	        setMode(Mode.LIVE_STOPPED);
+	    analyzer.close(); // drops the lane and stereo taps
+	    stereo.close();
+	    scheduler.close();
+	    for (ScopeLane lane : lanes)
+	        lane.close();
 	    try { boombox.close(); } catch (Throwable ignored) {}
 	}
 
 	/** Called by TimeDomain on seek clicks if needed. */
 	public void seekToIndex(int idx) {
 	    try {
-	        long sampleFrame = (long) idx * FFT_SIZE;
+	        long sampleFrame = (long) idx * FileAnalyzer.HOP;
 	        boombox.setSample(sampleFrame);
 	    } catch (Throwable t) {
 	    	System.err.println("Error seeking to index " + idx);
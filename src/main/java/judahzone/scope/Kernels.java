@@ -0,0 +1,57 @@
+package judahzone.scope;
+
+/** The per-bin float loops of the render path (Spectrometer bars, Spectrogram rows), written
+ * once per instruction set.  SELECTED is chosen at startup: the Vector API (SIMD) when the JVM is
+ * launched with {@code --add-modules jdk.incubator.vector} and -Dzone.scope.simd isn't false,
+ * otherwise plain loops.  Both give the same results within float rounding. */
+public interface Kernels {
+
+	Kernels SELECTED = select();
+
+	/** added to powers before taking dB */
+	float EPS = 1e-12f;
+
+	/** out[i] = in[i]^2 for i < n, non-finite or negative magnitudes count as silence.
+	 * @return the largest square */
+	float squares(float[] in, float[] out, int n);
+
+	/** out[bar] = mean of power[left[bar]..right[bar]] (inclusive) for each bar < bars */
+	void means(float[] power, int[] left, int[] right, float[] out, int bars);
+
+	/** a[i] *= gain[i] for i < n. @return the largest product */
+	float scale(float[] a, float[] gain, int n);
+
+	/** @return the largest of a[from, to), 0 if empty or all negative */
+	float max(float[] a, int from, int to);
+
+	/** into[i] = max(into[i], a[i]) for i < n */
+	void maxInto(float[] into, float[] a, int n);
+
+	/** out[i] = 10 log10(power[i] + EPS) for i < n */
+	void db(float[] power, float[] out, int n);
+
+	/** out[i] = log1p(in[i] * k) * scale for i < n (the Spectrogram's intensity ramp) */
+	void logRamp(float[] in, float[] out, int n, float k, float scale);
+
+	static Kernels scalar() {
+		return new ScalarKernels();
+	}
+
+	/** @return the Vector API kernels, or null if jdk.incubator.vector isn't loaded */
+	static Kernels vector() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+			return null;
+		try { // by name, so the incubator classes are never linked without the module
+			return (Kernels) Class.forName(Kernels.class.getPackageName() + ".VectorKernels")
+					.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			return null;
+		}
+	}
+
+	private static Kernels select() {
+		Kernels result = Boolean.parseBoolean(System.getProperty("zone.scope.simd", "true")) ? vector() : null;
+		return result == null ? scalar() : result;
+	}
+
+}
@@ -0,0 +1,180 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.util.concurrent.atomic.AtomicLong;
+
+import judahzone.util.Constants;
+
+/** Live latency from the audio callback that completes an FFT frame to the pixels showing it,
+ * split by stage into Histograms (each written by one thread, no locks or allocation):
+ * <ul><li>FFT: callback to Transformer result (analysis thread)</li>
+ * <li>QUEUE: result to FrameScheduler drain (EDT)</li>
+ * <li>PAINT: drain to TimeDomain and Spectrometer both painted (EDT)</li>
+ * <li>TOTAL: callback to painted (EDT)</li></ul>
+ * Optionally drawn as an overlay on the Spectrometer (-Dzone.scope.stats=true). */
+public class Latency {
+
+	public static enum Stage {
+		FFT("callback > fft"), QUEUE("fft > edt"), PAINT("edt > paint"), TOTAL("callback > pixels");
+		final String label;
+		Stage(String label) { this.label = label; }
+	}
+
+	/** painted() flags */
+	static final int TIME_DOMAIN = 1, SPECTROMETER = 2;
+	private static final int PAINTED = TIME_DOMAIN | SPECTROMETER;
+	/** frame-complete callback stamps awaiting their FFT result */
+	private static final int PENDING = 16; // power of 2
+	private static final long REFRESH_NANOS = 250_000_000L;
+	private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+
+	private final FrameScheduler scheduler;
+	private final Histogram[] stages = new Histogram[Stage.values().length];
+
+	// audio thread
+	private int samples;
+	private final long[] completed = new long[PENDING];
+	private final AtomicLong tail = new AtomicLong();
+	// analysis thread
+	private long head;
+
+	// EDT
+	private long drainedAt;
+	private long born;
+	private int painted = PAINTED;
+	private boolean overlay = Boolean.getBoolean("zone.scope.stats");
+	private final String[] lines = new String[Stage.values().length + 1];
+	private long refreshed;
+	private boolean realTime;
+
+	Latency(FrameScheduler scheduler) {
+		this.scheduler = scheduler;
+		for (int i = 0; i < stages.length; i++)
+			stages[i] = new Histogram();
+	}
+
+	/** audio thread, before handing the buffer to the Transformer: stamps the callback that
+	 * completes each back-to-back FFT_SIZE frame */
+	void callback(int frames) {
+		samples += frames;
+		if (samples < FFT_SIZE)
+			return;
+		samples -= FFT_SIZE;
+		completed();
+	}
+
+	/** audio thread: the samples of a frame are all in, its FFT is next */
+	void completed() {
+		long at = tail.get();
+		completed[(int) at & (PENDING - 1)] = System.nanoTime();
+		tail.lazySet(at + 1);
+	}
+
+	/** analysis thread, as a Transform is produced. @return its callback stamp, 0 if unknown */
+	long analyzed(long now) {
+		long end = tail.get();
+		if (head == end)
+			return 0;
+		if (end - head >= PENDING / 2)
+			head = end - 1; // jobs were skipped, resync to the newest frame
+		long result = completed[(int) head++ & (PENDING - 1)];
+		stages[Stage.FFT.ordinal()].record(now - result);
+		return result;
+	}
+
+	/** EDT, per drained frame */
+	void queued(long analyzedAt, long now) {
+		if (analyzedAt != 0)
+			stages[Stage.QUEUE.ordinal()].record(now - analyzedAt);
+	}
+
+	/** EDT, after a drain handed frames to the widgets. @param newest callback stamp of the newest frame */
+	void delivered(long newest, long now) {
+		born = newest;
+		drainedAt = now;
+		painted = 0;
+	}
+
+	/** EDT, end of a widget's paint: once both have painted since the last drain, the frame is on screen */
+	void painted(int widget) {
+		if (painted == PAINTED)
+			return;
+		painted |= widget;
+		if (painted != PAINTED)
+			return;
+		long now = System.nanoTime();
+		stages[Stage.PAINT.ordinal()].record(now - drainedAt);
+		if (born != 0)
+			stages[Stage.TOTAL.ordinal()].record(now - born);
+	}
+
+	public Histogram get(Stage stage) {
+		return stages[stage.ordinal()];
+	}
+
+	/** one audio buffer, the real-time target for TOTAL */
+	public long budgetNanos() {
+		return Constants.bufSize() * 1_000_000_000L / Constants.sampleRate();
+	}
+
+	/** @return true if p99 callback-to-pixels is within one audio buffer */
+	public boolean isRealTime() {
+		Histogram total = get(Stage.TOTAL);
+		return total.count() > 0 && total.percentile(99) <= budgetNanos();
+	}
+
+	public void reset() {
+		for (Histogram h : stages)
+			h.clear();
+	}
+
+	public boolean isOverlay() {
+		return overlay;
+	}
+
+	public void setOverlay(boolean overlay) {
+		this.overlay = overlay;
+	}
+
+	/** EDT: stats box in the top right corner of g (text refreshed a few times a second) */
+	void drawOverlay(Graphics g, int width) {
+		if (!overlay)
+			return;
+		long now = System.nanoTime();
+		if (lines[0] == null || now - refreshed > REFRESH_NANOS) {
+			refreshed = now;
+			for (Stage stage : Stage.values()) {
+				Histogram h = get(stage);
+				lines[stage.ordinal()] = stage.label + "  p50 " + Histogram.millis(h.percentile(50))
+						+ "  p99 " + Histogram.millis(h.percentile(99)) + "  max " + Histogram.millis(h.max());
+			}
+			lines[lines.length - 1] = "budget " + Histogram.millis(budgetNanos()) + "  dropped "
+					+ scheduler.getDropped() + "  coalesced " + scheduler.getCoalesced();
+			realTime = isRealTime();
+		}
+		FontMetrics fm = g.getFontMetrics();
+		int boxW = 0;
+		for (String line : lines)
+			boxW = Math.max(boxW, fm.stringWidth(line));
+		boxW += 8;
+		int lineH = fm.getHeight();
+		int x = width - boxW - 4;
+		g.setColor(BACKGROUND);
+		g.fillRect(x, 4, boxW, lineH * lines.length + 4);
+		g.setColor(realTime ? Color.GREEN : Color.ORANGE);
+		for (int i = 0; i < lines.length; i++)
+			g.drawString(lines[i], x + 4, 4 + lineH * (i + 1));
+	}
+
+	@Override public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Stage stage : Stage.values())
+			result.append(stage.label).append(": ").append(get(stage)).append('\n');
+		return result.append("budget ").append(Histogram.millis(budgetNanos())).append(" ms").toString();
+	}
+
+}
@@ -0,0 +1,154 @@
+package judahzone.scope;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import judahzone.data.Transform;
+import judahzone.util.Constants;
+
+/** The last N minutes of live frames (-Dzone.scope.history=30, 0 to disable) in a ring of
+ * direct buffers, quantized like a ColumnDb.  Off the Java heap, so a long history neither grows
+ * the heap nor adds to GC work; segments are allocated as the ring first fills.
+ * LIVE_STOPPED browses a snapshot() of it.  EDT only. */
+public class LiveHistory {
+
+	public static final int MINUTES = Integer.getInteger("zone.scope.history", 30);
+	/** bytes per direct buffer */
+	private static final int SEGMENT_BYTES = 1 << 24;
+
+	private final int capacity;
+	private final ColumnDb.Precision precision;
+	private final int width;
+	private final float[] lut;
+	/** rms, peak per slot */
+	private final ByteBuffer levels;
+	private ByteBuffer[] segments;
+	private int bins;
+	/** slots per segment */
+	private int span;
+	/** frames ever appended */
+	private long written;
+
+	public LiveHistory(int minutes) {
+		this(Math.max(1, (int) ((long) minutes * 60 * Constants.sampleRate() / FileAnalyzer.HOP)), ColumnDb.DEFAULT);
+	}
+
+	LiveHistory(int capacity, ColumnDb.Precision precision) {
+		this.capacity = capacity;
+		this.precision = precision;
+		width = switch (precision) {
+			case FLOAT -> Float.BYTES;
+			case DB16 -> Short.BYTES;
+			case DB8 -> Byte.BYTES;
+		};
+		lut = precision == ColumnDb.Precision.FLOAT ? null : ColumnDb.lut(precision);
+		levels = ByteBuffer.allocateDirect(capacity * 2 * Float.BYTES).order(ByteOrder.nativeOrder());
+	}
+
+	/** frames currently held */
+	public int size() {
+		return (int) Math.min(written, capacity);
+	}
+
+	public void append(Transform t) {
+		append(t.magnitudes(), t.rms().rms(), t.rms().peak());
+	}
+
+	public void append(float[] magnitudes, float rms, float peak) {
+		if (bins == 0) {
+			bins = magnitudes.length;
+			span = Math.max(1, SEGMENT_BYTES / (bins * width));
+			segments = new ByteBuffer[(capacity + span - 1) / span];
+		}
+		final int slot = (int) (written % capacity);
+		ByteBuffer seg = segment(slot);
+		int pos = (slot % span) * bins * width;
+		final int n = Math.min(bins, magnitudes.length);
+		for (int i = 0; i < n; i++, pos += width) {
+			switch (precision) {
+				case FLOAT -> seg.putFloat(pos, magnitudes[i]);
+				case DB16 -> seg.putShort(pos, (short) ColumnDb.quantize(magnitudes[i], precision));
+				case DB8 -> seg.put(pos, (byte) ColumnDb.quantize(magnitudes[i], precision));
+			}
+		}
+		levels.putFloat(slot * 2 * Float.BYTES, rms);
+		levels.putFloat((slot * 2 + 1) * Float.BYTES, peak);
+		written++;
+	}
+
+	private ByteBuffer segment(int slot) {
+		int s = slot / span;
+		if (segments[s] == null) {
+			int slots = Math.min(span, capacity - s * span);
+			segments[s] = ByteBuffer.allocateDirect(slots * bins * width).order(ByteOrder.nativeOrder());
+		}
+		return segments[s];
+	}
+
+	/** @return the held frames oldest first, fixed at this moment (appends after it
+	 * eventually overwrite what it shows, so drop it on resume) */
+	public FrameDb snapshot() {
+		return new View(written, size());
+	}
+
+	private class View implements FrameDb {
+
+		private final long first;
+		private final int frames;
+
+		View(long end, int frames) {
+			this.first = end - frames;
+			this.frames = frames;
+		}
+
+		private int slot(int idx) {
+			return (int) ((first + idx) % capacity);
+		}
+
+		@Override public int size() {
+			return frames;
+		}
+
+		@Override public boolean has(int idx) {
+			return true;
+		}
+
+		@Override public int bins() {
+			return bins;
+		}
+
+		@Override public float[] magnitudes(int idx, float[] scratch) {
+			final int slot = slot(idx);
+			final ByteBuffer seg = segments[slot / span];
+			int pos = (slot % span) * bins * width;
+			switch (precision) {
+				case FLOAT -> {
+					for (int i = 0; i < bins; i++, pos += Float.BYTES)
+						scratch[i] = seg.getFloat(pos);
+				}
+				case DB16 -> {
+					for (int i = 0; i < bins; i++, pos += Short.BYTES)
+						scratch[i] = lut[seg.getShort(pos) & 0xFFFF];
+				}
+				case DB8 -> {
+					for (int i = 0; i < bins; i++, pos++)
+						scratch[i] = lut[seg.get(pos) & 0xFF];
+				}
+			}
+			return scratch;
+		}
+
+		@Override public float rms(int idx) {
+			return levels.getFloat(slot(idx) * 2 * Float.BYTES);
+		}
+
+		@Override public float peak(int idx) {
+			return levels.getFloat((slot(idx) * 2 + 1) * Float.BYTES);
+		}
+
+		@Override public void set(int idx, Transform t) {
+			throw new UnsupportedOperationException("live history is read-only");
+		}
+	}
+
+}
@@ -0,0 +1,236 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import judahzone.data.Transform;
+import judahzone.fx.analysis.Transformer;
+import judahzone.util.RTLogger;
+
+/** The live Transformer: stamps frame-completing callbacks for Latency and, with
+ * -Dzone.scope.overlap, replaces the back-to-back FFT_SIZE frames with a sliding window that
+ * emits a frame every FileAnalyzer.HOP samples.  The audio thread only copies into a ring,
+ * publishes one of POOL preallocated windows on a lock-free index ring and unparks the consumer:
+ * no locks, allocation or thread starts.  The consumer is an own analysis thread or, given an
+ * Executor (ScopeLane), a serial drain there, queued by a shared dispatcher thread rather than
+ * the audio thread.  Taps receive the same audio buffers first.  close() stops the consumer. */
+public class LiveTransformer extends Transformer {
+
+	/** windows in flight, a frame is skipped if the analysis thread falls this far behind */
+	private static final int POOL = 4; // power of 2
+	private static final int MASK = POOL - 1;
+	private static final LiveTransformer[] NONE = new LiveTransformer[0];
+
+	/** executor transformers the dispatcher hands off (copy on write, EDT) */
+	private static volatile LiveTransformer[] handoffs = NONE;
+	private static volatile Thread dispatcher;
+
+	private final Consumer<Transform> out;
+	/** stamped per frame, may be null */
+	private final Latency latency;
+	/** shared analysis threads, or null for an own thread */
+	private final Executor executor;
+	/** frames are windowed here (overlap or an executor) rather than by the base Transformer */
+	private final boolean windowed;
+	private volatile LiveTransformer[] taps = NONE;
+
+	// audio thread
+	private final float[] ringLeft = new float[FFT_SIZE];
+	private final float[] ringRight = new float[FFT_SIZE];
+	/** next ring slot to write, also the oldest sample once the ring is full */
+	private int write;
+	private int filled;
+	private int sinceHop;
+	private long skipped;
+
+	private final float[][][] windows;
+	/** next window to analyze, written by the consumer only */
+	private final AtomicLong head = new AtomicLong();
+	/** next window to fill, written by the audio thread only */
+	private final AtomicLong tail = new AtomicLong();
+	/** the windowed mode's own FFT, used by one analysis thread at a time */
+	private final Transformer fft;
+	/** the own analysis thread, null with an executor or unwindowed */
+	private final Thread worker;
+	private volatile boolean closed;
+	/** a drain is queued or running on the executor */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final Runnable drain = this::drain;
+
+	public LiveTransformer(Consumer<Transform> out, Latency latency) {
+		this(out, latency, null);
+	}
+
+	public LiveTransformer(Consumer<Transform> out, Latency latency, Executor executor) {
+		super(out);
+		this.out = out;
+		this.latency = latency;
+		this.executor = executor;
+		windowed = executor != null || FileAnalyzer.HOP < FFT_SIZE;
+		windows = windowed ? new float[POOL][2][FFT_SIZE] : null;
+		fft = windowed ? new Transformer(t -> { }) : null;
+		worker = windowed && executor == null ? start() : null;
+		if (windowed && executor != null)
+			handoff(this);
+	}
+
+	/** lanes fed the same audio as this one (EDT) */
+	void setTaps(LiveTransformer... taps) {
+		this.taps = taps.length == 0 ? NONE : taps.clone();
+	}
+
+	@Override public void process(float[] left, float[] right) {
+		for (LiveTransformer tap : taps)
+			tap.process(left, right);
+		if (!windowed) {
+			if (latency != null)
+				latency.callback(left.length);
+			super.process(left, right);
+			return;
+		}
+		final int hop = FileAnalyzer.HOP;
+		final int n = left.length;
+		int i = 0;
+		while (i < n) {
+			int take = Math.min(n - i, hop - sinceHop);
+			take = Math.min(take, FFT_SIZE - write); // up to the ring's end
+			System.arraycopy(left, i, ringLeft, write, take);
+			System.arraycopy(right, i, ringRight, write, take);
+			write = (write + take) % FFT_SIZE;
+			filled = Math.min(FFT_SIZE, filled + take);
+			sinceHop += take;
+			i += take;
+			if (sinceHop == hop) {
+				sinceHop = 0;
+				if (filled == FFT_SIZE)
+					emit();
+			}
+		}
+	}
+
+	/** audio thread: unroll the ring (oldest first) into the next free window and publish it */
+	private void emit() {
+		if (closed)
+			return;
+		final long at = tail.get();
+		if (at - head.get() >= POOL) {
+			skipped++;
+			return;
+		}
+		if (latency != null)
+			latency.completed();
+		final float[][] window = windows[(int) at & MASK];
+		final int older = FFT_SIZE - write;
+		System.arraycopy(ringLeft, write, window[0], 0, older);
+		System.arraycopy(ringLeft, 0, window[0], older, write);
+		System.arraycopy(ringRight, write, window[1], 0, older);
+		System.arraycopy(ringRight, 0, window[1], older, write);
+		tail.lazySet(at + 1);
+		LockSupport.unpark(executor == null ? worker : dispatcher);
+	}
+
+	/** the own analysis thread, started here rather than on the first frame's audio callback */
+	private Thread start() {
+		Thread t = new Thread(() -> {
+			while (!closed)
+				if (!analyzePending())
+					LockSupport.park(this);
+		}, LiveTransformer.class.getSimpleName());
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	/** consumer: analyze the published windows. @return false if there were none */
+	private boolean analyzePending() {
+		long at = head.get();
+		final long end = tail.get();
+		if (at == end)
+			return false;
+		for (; at < end; at++) {
+			analyze(windows[(int) at & MASK]);
+			head.lazySet(at + 1);
+		}
+		return true;
+	}
+
+	/** register an executor transformer with the dispatcher, started with the first one */
+	private static synchronized void handoff(LiveTransformer add) {
+		if (dispatcher == null) {
+			dispatcher = new Thread(LiveTransformer::dispatch, LiveTransformer.class.getSimpleName() + " dispatch");
+			dispatcher.setDaemon(true);
+			dispatcher.start();
+		}
+		LiveTransformer[] next = Arrays.copyOf(handoffs, handoffs.length + 1);
+		next[handoffs.length] = add;
+		handoffs = next;
+	}
+
+	private static synchronized void remove(LiveTransformer gone) {
+		handoffs = Arrays.stream(handoffs).filter(t -> t != gone).toArray(LiveTransformer[]::new);
+	}
+
+	/** dispatcher thread: woken by the audio thread, queues a drain for each executor transformer
+	 * with published windows */
+	private static void dispatch() {
+		while (true) {
+			LockSupport.park(LiveTransformer.class);
+			for (LiveTransformer t : handoffs)
+				t.schedule();
+		}
+	}
+
+	private void schedule() {
+		if (head.get() == tail.get() || scheduled.getAndSet(true))
+			return;
+		try {
+			executor.execute(drain);
+		} catch (RejectedExecutionException e) {
+			scheduled.set(false); // executor backlog full, retried on the next frame
+		}
+	}
+
+	/** executor: analyze every pending window, then re-check for one that raced the hand-off */
+	private void drain() {
+		do {
+			analyzePending();
+			scheduled.set(false);
+		} while (head.get() != tail.get() && !scheduled.getAndSet(true));
+	}
+
+	private void analyze(float[][] window) {
+		try {
+			frame(window[0], window[1]);
+		} catch (Throwable e) {
+			RTLogger.warn(LiveTransformer.class, e);
+		}
+	}
+
+	/** analysis thread: one windowed frame, oldest sample first, reused once this returns */
+	protected void frame(float[] left, float[] right) {
+		out.accept(fft.analyze(left, right));
+	}
+
+	/** drop the taps and stop analyzing windows, the analysis thread exits */
+	public void close() {
+		closed = true;
+		taps = NONE;
+		if (worker != null)
+			LockSupport.unpark(worker);
+		else if (executor != null)
+			remove(this);
+	}
+
+	/** windowed frames skipped because every window was still being analyzed */
+	public long getSkipped() {
+		return skipped;
+	}
+
+}
@@ -0,0 +1,144 @@
+package judahzone.scope;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import judahzone.data.Recording;
+import judahzone.util.Constants;
+import judahzone.util.RTLogger;
+
+/** Decode-once, disk-backed PCM: the file is converted to 16 bit samples in a temporary file and
+ * memory-mapped, so the analysis' windowed reads of multi-hour audio cost a constant heap.  Unlike
+ * FileStream it needs no length up front.  Playback gets a heap copy (toRecording()) instead of
+ * a second decode.  Deleted on close. */
+public class PcmFile implements Closeable, FileAnalyzer.Source {
+
+	/** keep each mapping well under the 2GB MappedByteBuffer limit */
+	private static final long SEGMENT_BYTES = 1L << 30;
+	private static final int COPY = 1 << 16;
+
+	private final File tmp;
+	private final int channels;
+	private final long frames;
+	/** sample frames per segment */
+	private final int span;
+	private final ShortBuffer[] segments;
+
+	private PcmFile(File tmp, FileChannel ch, int channels, long frames) throws IOException {
+		this.tmp = tmp;
+		this.channels = channels;
+		this.frames = frames;
+		int frameBytes = channels * Short.BYTES;
+		span = (int) (SEGMENT_BYTES / frameBytes);
+		segments = new ShortBuffer[(int) ((frames + span - 1) / span)];
+		for (int s = 0; s < segments.length; s++) {
+			long count = Math.min(span, frames - (long) s * span);
+			segments[s] = ch.map(MapMode.READ_ONLY, (long) s * span * frameBytes, count * frameBytes)
+					.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+		}
+	}
+
+	/** @return the decoded audio of f, or null if AudioSystem can't decode it at the engine's
+	 * sample rate (the caller falls back to MP3.load) */
+	public static PcmFile decode(File f) {
+		File tmp = null;
+		try (AudioInputStream raw = AudioSystem.getAudioInputStream(f)) {
+			AudioFormat src = raw.getFormat();
+			int channels = src.getChannels();
+			if (channels < 1 || channels > 2 || Math.abs(src.getSampleRate() - Constants.sampleRate()) > 1f)
+				return null;
+			AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, src.getSampleRate(),
+					16, channels, channels * 2, src.getSampleRate(), false);
+			tmp = File.createTempFile("zone-scope-", ".pcm");
+			tmp.deleteOnExit();
+			long start = System.currentTimeMillis();
+			try (AudioInputStream in = AudioSystem.getAudioInputStream(pcm, raw);
+					FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				byte[] bytes = new byte[COPY];
+				ByteBuffer buf = ByteBuffer.wrap(bytes);
+				int read;
+				while ((read = in.read(bytes)) >= 0) {
+					buf.clear().limit(read);
+					while (buf.hasRemaining())
+						ch.write(buf);
+				}
+				long frames = ch.size() / (channels * 2);
+				if (frames == 0) {
+					tmp.delete();
+					return null;
+				}
+				PcmFile result = new PcmFile(tmp, ch, channels, frames); // mappings outlive the channel
+				RTLogger.log(PcmFile.class, f.getName() + " decoded to disk frames: " + frames + " MB: "
+						+ (ch.size() >> 20) + " millis: " + (System.currentTimeMillis() - start));
+				return result;
+			}
+		} catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+			if (tmp != null)
+				tmp.delete();
+			if (e instanceof IOException)
+				RTLogger.warn(PcmFile.class, e);
+			return null;
+		}
+	}
+
+	/** sample frames (per channel) */
+	public long length() {
+		return frames;
+	}
+
+	/** @return the whole decode as a playback Recording on the heap, read back from disk */
+	public Recording toRecording() {
+		Tape tape = new Tape();
+		float[] left = new float[COPY];
+		float[] right = new float[COPY];
+		for (long at = 0; at < frames; at += COPY) {
+			int n = (int) Math.min(COPY, frames - at);
+			read(at, left, right, 0, n);
+			tape.append(left, right, 0, n);
+		}
+		return tape.finish();
+	}
+
+	/** fill left/right[offset, offset + length) from sample, mono duplicated */
+	@Override public void read(long sample, float[] left, float[] right, int offset, int length) {
+		int i = 0;
+		while (i < length) {
+			long at = sample + i;
+			if (at < 0 || at >= frames)
+				break;
+			ShortBuffer seg = segments[(int) (at / span)];
+			int pos = (int) (at % span);
+			int count = (int) Math.min(length - i, Math.min(span - pos, frames - at));
+			int base = pos * channels;
+			for (int n = 0; n < count; n++, i++) {
+				float l = seg.get(base + n * channels) / 32768f;
+				left[offset + i] = l;
+				right[offset + i] = channels == 2 ? seg.get(base + n * channels + 1) / 32768f : l;
+			}
+		}
+		for (; i < length; i++)
+			left[offset + i] = right[offset + i] = 0f;
+	}
+
+	@Override public void close() {
+		try {
+			Files.deleteIfExists(tmp.toPath()); // unlinked now, freed when the mappings are collected
+		} catch (IOException e) {
+			RTLogger.warn(this, e);
+		}
+	}
+
+}
@@ -0,0 +1,121 @@
+package judahzone.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import judahzone.data.Transform;
+import judahzone.util.RTLogger;
+
+/** Level-of-detail pyramid over a file's FrameDb: level k keeps the max magnitudes, max RMS and
+ * max peak of each run of 2^k frames, so a zoomed-out viewport renders in O(screen width) and
+ * peaks survive instead of the last frame drawn into a pixel winning.
+ * Wraps the base right away, levels appear once build() has run. */
+public class Pyramid implements FrameDb {
+
+	/** level 1 only halves the work of drawing the base, not worth its memory */
+	static final int FIRST = 2;
+
+	private final FrameDb base;
+	private volatile FrameDb[] levels;
+
+	public Pyramid(FrameDb base) {
+		this.base = base;
+		levels = new FrameDb[] { base };
+	}
+
+	/** Reduce the (fully analyzed) base into levels FIRST, FIRST + 1 .. until a level is a single entry. */
+	public void build(String name) {
+		final int bins = base.bins();
+		if (bins == 0)
+			return;
+		long start = System.currentTimeMillis();
+		ColumnDb.Precision precision = base instanceof ColumnDb columns ? columns.getPrecision() : ColumnDb.DEFAULT;
+		float[] scratch = new float[bins];
+		float[] max = new float[bins];
+
+		List<FrameDb> result = new ArrayList<>();
+		result.add(base);
+		for (int k = 1; k < FIRST; k++)
+			result.add(null);
+
+		FrameDb below = base;
+		int factor = 1 << FIRST;
+		while (true) {
+			int size = (below.size() + factor - 1) / factor;
+			if (size < 2)
+				break;
+			below = reduce(below, factor, size, precision, scratch, max);
+			result.add(below);
+			factor = 2;
+		}
+		levels = result.toArray(new FrameDb[result.size()]);
+		RTLogger.log(Pyramid.class, name + " pyramid levels: " + levels.length + " millis: " + (System.currentTimeMillis() - start));
+	}
+
+	private static ColumnDb reduce(FrameDb below, int factor, int size, ColumnDb.Precision precision,
+			float[] scratch, float[] max) {
+		final int bins = max.length;
+		ColumnDb level = new ColumnDb(size, precision);
+		for (int i = 0; i < size; i++) {
+			int from = i * factor;
+			int to = Math.min(below.size(), from + factor);
+			boolean any = false;
+			float rms = 0f, peak = 0f;
+			for (int j = from; j < to; j++) {
+				if (!below.has(j))
+					continue;
+				float[] mags = below.magnitudes(j, scratch);
+				if (!any) {
+					System.arraycopy(mags, 0, max, 0, bins);
+					any = true;
+				} else
+					for (int b = 0; b < bins; b++)
+						if (mags[b] > max[b])
+							max[b] = mags[b];
+				rms = Math.max(rms, below.rms(j));
+				peak = Math.max(peak, below.peak(j));
+			}
+			if (any)
+				level.set(i, max, rms, peak);
+		}
+		return level;
+	}
+
+	@Override public int levels() {
+		return levels.length;
+	}
+
+	@Override public FrameDb level(int k) {
+		FrameDb[] current = levels;
+		return k < current.length ? current[k] : null;
+	}
+
+	@Override public int size() {
+		return base.size();
+	}
+
+	@Override public boolean has(int idx) {
+		return base.has(idx);
+	}
+
+	@Override public int bins() {
+		return base.bins();
+	}
+
+	@Override public float[] magnitudes(int idx, float[] scratch) {
+		return base.magnitudes(idx, scratch);
+	}
+
+	@Override public float rms(int idx) {
+		return base.rms(idx);
+	}
+
+	@Override public float peak(int idx) {
+		return base.peak(idx);
+	}
+
+	@Override public void set(int idx, Transform t) {
+		base.set(idx, t);
+	}
+
+}
@@ -7,7 +7,6 @@ import static judahzone.util.AudioMetrics.Y_FACTOR;
 import java.awt.Dimension;
 
 import judahzone.data.Transform;
-import judahzone.util.AudioMetrics;
 import judahzone.util.Rainbow;
 import judahzone.util.WavConstants;
 
@@ -22,21 +21,21 @@ public class RMSMeter extends TimeWidget {
 	private final JudahScope scope;
 
 
-	public RMSMeter(Dimension size, Transform[] data, JudahScope scope) {
+	public RMSMeter(Dimension size, FrameDb data, JudahScope scope) {
 		super(size, data);
 		this.scope = scope;
 		updateFactors();
 	}
 
-	private void drawX(int xOnScreen, AudioMetrics.RMS data, int cellWidth, boolean live) {
+	private void drawX(int xOnScreen, float rms, float peak, int cellWidth, boolean live) {
 
 		// compute pixel height from RMS and clamp to [0..baseline]
-		int height = (int) (data.rms() * rmsFactor * (live ? WavConstants.LIVE_FACTOR : WavConstants.TO_LINE));
+		int height = (int) (rms * rmsFactor * (live ? WavConstants.LIVE_FACTOR : WavConstants.TO_LINE));
 		height = Math.max(0, Math.min(h, height));
 		int y = h - height;
 
 		// Color index driven by smoothed peak value
-		smoothedPeak = smoothedPeak * (1.0f - PEAK_SMOOTH) + data.peak() * PEAK_SMOOTH;
+		smoothedPeak = smoothedPeak * (1.0f - PEAK_SMOOTH) + peak * PEAK_SMOOTH;
 		int colorIndex = I_SHIFT + Math.round(smoothedPeak * peaksFactor * (live ? WavConstants.LIVE_FACTOR : WavConstants.TO_LINE));
 
 		// draw the RMS-driven bar using the rainbow color (color intensity is independent of height)
@@ -50,34 +49,43 @@ public class RMSMeter extends TimeWidget {
 		clearRect(xOnScreen, cellWidth);
 		if (t == null)
 			return;
-		drawX(xOnScreen, t.rms(), cellWidth, true);
+		drawX(xOnScreen, t.rms().rms(), t.rms().peak(), cellWidth, true);
 	}
 
 	@Override
-	public void generateImage(float unit, int startIndex, int endIndex) {
-		clearRect(0, w);
-		if (startIndex < 0 || endIndex < 0 || startIndex >= db.length)
-			return;
-		if (endIndex >= db.length)
-			endIndex = db.length - 1;
-
-		int visibleCount = endIndex - startIndex + 1;
-		if (visibleCount <= 0)
-			return;
+	void drawCell(int xOnScreen, int idx, int cellWidth) {
+		drawX(xOnScreen, db.rms(idx), db.peak(idx), cellWidth, live());
+	}
 
-		// unit can be fractional, but we need integer cell positions
-		for (int i = 0; i < visibleCount; i++) {
-			int dbIndex = startIndex + i;
-			Transform t = dbIndex >= 0 && dbIndex < db.length ? db[dbIndex] : null;
-			if (t == null)
-				continue; // holes in db for live mode / partial files
-
-			int xOnScreen = Math.round(i * unit);
-			int nextX = Math.round((i + 1) * unit);
-			int cellWidth = Math.max(1, nextX - xOnScreen);
-			drawX(xOnScreen, t.rms(), cellWidth, scope.getMode() != JudahScope.Mode.FILE);
+	@Override
+	void drawColumn(int x, FrameDb level, int from, int to) {
+		boolean any = false;
+		float rms = 0f, peak = 0f;
+		for (int i = from; i <= to; i++) {
+			if (!level.has(i))
+				continue;
+			any = true;
+			rms = Math.max(rms, level.rms(i));
+			peak = Math.max(peak, level.peak(i));
 		}
-		drawBorder();
+		if (any)
+			drawX(x, rms, peak, 1, live());
+	}
+
+	/** re-seed the peak smoothing from the column left of a strip, not from wherever the last
+	 * strip (possibly the other edge of the image) ended */
+	@Override
+	void preceding(FrameDb level, int from, int to) {
+		float peak = 0f;
+		for (int i = Math.max(0, from); i <= to; i++)
+			if (level.has(i))
+				peak = Math.max(peak, level.peak(i));
+		smoothedPeak = peak;
+	}
+
+	/** live input levels are scaled differently from files (no scope: offscreen/headless, treat as live) */
+	private boolean live() {
+		return scope == null || scope.getMode() != JudahScope.Mode.FILE;
 	}
 
 	public void both(int val, int unitIgnored) {
@@ -0,0 +1,63 @@
+package judahzone.scope;
+
+/** Plain-loop Kernels, the fallback when the Vector API isn't available. */
+final class ScalarKernels implements Kernels {
+
+	@Override public float squares(float[] in, float[] out, int n) {
+		float max = 0f;
+		for (int i = 0; i < n; i++) {
+			float mag = in[i];
+			if (!(mag >= 0f) || mag == Float.POSITIVE_INFINITY)
+				mag = 0f;
+			float p = mag * mag;
+			out[i] = p;
+			if (p > max) max = p;
+		}
+		return max;
+	}
+
+	@Override public void means(float[] power, int[] left, int[] right, float[] out, int bars) {
+		for (int bx = 0; bx < bars; bx++) {
+			final int binLeft = left[bx];
+			final int binRight = right[bx];
+			float sum = 0f;
+			for (int b = binLeft; b <= binRight; b++)
+				sum += power[b];
+			out[bx] = sum / (binRight - binLeft + 1);
+		}
+	}
+
+	@Override public float scale(float[] a, float[] gain, int n) {
+		float max = 0f;
+		for (int i = 0; i < n; i++) {
+			float p = a[i] * gain[i];
+			a[i] = p;
+			if (p > max) max = p;
+		}
+		return max;
+	}
+
+	@Override public float max(float[] a, int from, int to) {
+		float max = 0f;
+		for (int i = from; i < to; i++)
+			if (a[i] > max) max = a[i];
+		return max;
+	}
+
+	@Override public void maxInto(float[] into, float[] a, int n) {
+		for (int i = 0; i < n; i++)
+			if (a[i] > into[i])
+				into[i] = a[i];
+	}
+
+	@Override public void db(float[] power, float[] out, int n) {
+		for (int i = 0; i < n; i++)
+			out[i] = FastMath.db(power[i] + EPS);
+	}
+
+	@Override public void logRamp(float[] in, float[] out, int n, float k, float scale) {
+		for (int i = 0; i < n; i++)
+			out[i] = FastMath.log1p(in[i] * k) * scale;
+	}
+
+}
@@ -0,0 +1,266 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.awt.Dimension;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import judahzone.data.Recording;
+import judahzone.util.Constants;
+import judahzone.util.MP3;
+
+/** Headless batch analysis of a folder of audio files: each file goes through the same
+ * FileStream/FileAnalyzer path as FILE mode and leaves a spectrogram PNG plus per-frame features
+ * (rms, peak, spectral centroid, 85% rolloff, flatness and flux) as CSV or little-endian floats.
+ *
+ * <pre>java -cp zone-scope-shaded.jar judahzone.scope.ScopeBatch folder [out=folder/scope]
+ *     [jobs=N] [width=1100] [height=256] [format=csv|bin]</pre>
+ *
+ * Files run {@code jobs} at a time, their FFT frames share the FileAnalyzer workers.  Streamable
+ * files never hold their audio, only a quantized ColumnDb (see -Dzone.scope.precision), so memory
+ * is bounded by jobs x the longest file's spectra.  Files of unknown length decode to a mapped
+ * PcmFile first, only formats AudioSystem can't read go through MP3.load. */
+public class ScopeBatch {
+
+	private static final String[] EXTENSIONS = { ".wav", ".aif", ".aiff", ".au", ".mp3" };
+	static final String[] FEATURES = { "frame", "seconds", "rms", "peak", "centroid", "rolloff", "flatness", "flux" };
+	/** binary feature file: magic, rows, columns, sample rate (ints), then rows x columns floats */
+	private static final int MAGIC = 0x5A534631; // ZSF1
+	private static final float ROLLOFF = 0.85f;
+
+	private final File out;
+	private final int width;
+	private final int height;
+	private final boolean csv;
+
+	ScopeBatch(File out, int width, int height, boolean csv) {
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		this.csv = csv;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		File folder = null, out = null;
+		int jobs = Math.max(1, FileAnalyzer.WORKERS / 2), width = 1100, height = 256;
+		boolean csv = true;
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			String key = eq < 0 ? "" : arg.substring(0, eq);
+			String val = arg.substring(eq + 1);
+			switch (key) {
+				case "" -> folder = new File(arg);
+				case "out" -> out = new File(val);
+				case "jobs" -> jobs = Math.max(1, Integer.parseInt(val));
+				case "width" -> width = Integer.parseInt(val);
+				case "height" -> height = Integer.parseInt(val);
+				case "format" -> csv = !"bin".equalsIgnoreCase(val);
+				default -> folder = null;
+			}
+		}
+		if (folder == null || !folder.isDirectory()) {
+			System.err.println("usage: ScopeBatch folder [out=folder/scope] [jobs=N] [width=1100] [height=256] [format=csv|bin]");
+			System.exit(2);
+		}
+		if (out == null)
+			out = new File(folder, "scope");
+		if (!out.isDirectory() && !out.mkdirs()) {
+			System.err.println("Can't create " + out);
+			System.exit(2);
+		}
+		File[] files = folder.listFiles(f -> f.isFile() && audio(f.getName()));
+		Arrays.sort(files);
+		int failed = new ScopeBatch(out, width, height, csv).run(files, jobs);
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	static boolean audio(String name) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		for (String ext : EXTENSIONS)
+			if (lower.endsWith(ext))
+				return true;
+		return false;
+	}
+
+	/** @return number of files that failed */
+	int run(File[] files, int jobs) throws InterruptedException {
+		long start = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(jobs, r -> {
+			Thread t = new Thread(r, ScopeBatch.class.getSimpleName());
+			t.setDaemon(true);
+			return t;
+		});
+		List<Future<Integer>> results = new ArrayList<>(files.length);
+		for (File f : files)
+			results.add(pool.submit(() -> process(f)));
+		int failed = 0;
+		long frames = 0;
+		for (int i = 0; i < files.length; i++) {
+			try {
+				frames += results.get(i).get();
+			} catch (ExecutionException e) {
+				failed++;
+				System.err.println(files[i].getName() + ": " + e.getCause());
+			}
+		}
+		pool.shutdown();
+		System.out.println("batch files: " + files.length + " failed: " + failed + " frames: " + frames
+				+ " jobs: " + jobs + " millis: " + (System.currentTimeMillis() - start));
+		return failed;
+	}
+
+	/** analyze f, write its PNG and features. @return frames analyzed */
+	int process(File f) throws IOException {
+		long start = System.currentTimeMillis();
+		FrameDb db = analyze(f);
+		if (db == null || db.size() == 0 || db.bins() == 0)
+			throw new IOException("no audio frames");
+		String base = f.getName().replaceFirst("\\.[^.]*$", "");
+		Pyramid pyramid = new Pyramid(db);
+		pyramid.build(f.getName());
+		Spectrogram image = new Spectrogram(new Dimension(width, height), pyramid);
+		image.generateImage(width / (float) db.size(), 0, db.size() - 1);
+		ImageIO.write(image, "png", new File(out, base + ".png"));
+		features(db, new File(out, base + (csv ? ".csv" : ".features")));
+		System.out.println(f.getName() + " frames: " + db.size() + " millis: " + (System.currentTimeMillis() - start));
+		return db.size();
+	}
+
+	private static FrameDb analyze(File f) {
+		FileStream stream = FileStream.open(f);
+		if (stream != null) {
+			stream.run(null, (from, to) -> { });
+			return stream.getDb();
+		}
+		PcmFile pcm = PcmFile.decode(f);
+		if (pcm != null) {
+			try (pcm) {
+				ColumnDb result = new ColumnDb(FileAnalyzer.frames(pcm));
+				FileAnalyzer.analyze(pcm, result, f.getName());
+				return result;
+			}
+		}
+		Recording rec = MP3.load(f);
+		if (rec == null)
+			return null;
+		ColumnDb result = new ColumnDb(FileAnalyzer.frames(rec));
+		FileAnalyzer.analyze(rec, result, f.getName());
+		return result;
+	}
+
+	private void features(FrameDb db, File target) throws IOException {
+		final int bins = db.bins();
+		final float binHz = Constants.sampleRate() / (float) FFT_SIZE;
+		final float seconds = FileAnalyzer.HOP / (float) Constants.sampleRate();
+		float[] mags = new float[bins];
+		float[] previous = new float[bins];
+		float[] row = new float[FEATURES.length];
+		int rows = 0;
+		for (int i = 0; i < db.size(); i++)
+			if (db.has(i))
+				rows++; // a truncated stream leaves holes
+		try (FeatureWriter writer = csv ? new Csv(target) : new Binary(target, rows)) {
+			for (int i = 0; i < db.size(); i++) {
+				if (!db.has(i))
+					continue;
+				mags = db.magnitudes(i, mags); // may be the db's own array rather than mags
+				double sum = 0, weighted = 0, logs = 0, flux = 0;
+				for (int b = 0; b < bins; b++) {
+					float m = mags[b];
+					sum += m;
+					weighted += m * (b * binHz);
+					logs += Math.log(m + 1e-12);
+					float rise = m - previous[b];
+					if (rise > 0)
+						flux += rise;
+				}
+				double target85 = sum * ROLLOFF, running = 0;
+				int rolloff = bins - 1;
+				for (int b = 0; b < bins; b++) {
+					running += mags[b];
+					if (running >= target85) {
+						rolloff = b;
+						break;
+					}
+				}
+				double mean = sum / bins;
+				row[0] = i;
+				row[1] = i * seconds;
+				row[2] = db.rms(i);
+				row[3] = db.peak(i);
+				row[4] = sum > 0 ? (float) (weighted / sum) : 0;
+				row[5] = rolloff * binHz;
+				row[6] = mean > 0 ? (float) (Math.exp(logs / bins) / mean) : 0;
+				row[7] = (float) flux;
+				writer.row(row);
+				float[] swap = previous;
+				previous = mags;
+				mags = swap;
+			}
+		}
+	}
+
+	private static interface FeatureWriter extends AutoCloseable {
+		void row(float[] row) throws IOException;
+		@Override void close() throws IOException;
+	}
+
+	private static class Csv implements FeatureWriter {
+		private final PrintWriter out;
+		Csv(File target) throws IOException {
+			out = new PrintWriter(target, "UTF-8");
+			out.println(String.join(",", FEATURES));
+		}
+		@Override public void row(float[] row) {
+			StringBuilder line = new StringBuilder(96);
+			line.append((int) row[0]);
+			for (int i = 1; i < row.length; i++)
+				line.append(',').append(row[i]);
+			out.println(line);
+		}
+		@Override public void close() throws IOException {
+			out.close();
+			if (out.checkError())
+				throw new IOException("write failed");
+		}
+	}
+
+	private static class Binary implements FeatureWriter {
+		private final DataOutputStream out;
+		private final ByteBuffer buf = ByteBuffer.allocate(FEATURES.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		Binary(File target, int frames) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+			ByteBuffer header = ByteBuffer.allocate(4 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(frames).putInt(FEATURES.length).putInt(Constants.sampleRate());
+			out.write(header.array());
+		}
+		@Override public void row(float[] row) throws IOException {
+			buf.clear();
+			for (float f : row)
+				buf.putFloat(f);
+			out.write(buf.array());
+		}
+		@Override public void close() throws IOException {
+			out.close();
+		}
+	}
+
+}
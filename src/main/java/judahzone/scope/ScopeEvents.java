@@ -0,0 +1,96 @@
+package judahzone.scope;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** Flight Recorder events for the scope's analysis and rendering.  Disabled events cost a
+ * branch, so they stay in production builds; record a session with
+ * <pre>jcmd &lt;pid&gt; JFR.start name=scope settings=profile filename=scope.jfr</pre>
+ * and look under the "Zone Scope" category. */
+public final class ScopeEvents {
+
+	private ScopeEvents() { }
+
+	@Name("judahzone.scope.FileLoad")
+	@Label("File Load")
+	@Category({ "Zone Scope", "Analysis" })
+	@Description("FILE mode load: from the click to the spectra ready")
+	@StackTrace(false)
+	public static class FileLoad extends Event {
+		@Label("File")
+		public String file;
+		@Label("Source")
+		@Description("cache, stream, disk or decode")
+		public String source;
+		@Label("Frames")
+		public int frames;
+		@Label("File Size")
+		@DataAmount
+		public long bytes;
+		@Label("Decode Time")
+		@Description("whole-file audio decode (a stream decodes inline with its analysis)")
+		@Timespan
+		public long decode;
+	}
+
+	@Name("judahzone.scope.FftBatch")
+	@Label("FFT Batch")
+	@Category({ "Zone Scope", "Analysis" })
+	@Description("A contiguous run of FFT frames analyzed on one worker")
+	@StackTrace(false)
+	public static class FftBatch extends Event {
+		@Label("From Frame")
+		public int from;
+		@Label("Frames")
+		public int frames;
+	}
+
+	@Name("judahzone.scope.Regenerate")
+	@Label("Time Domain Regenerate")
+	@Category({ "Zone Scope", "Rendering" })
+	@Description("A TimeWidget image redrawn for a viewport, whole or a scrolled strip")
+	@StackTrace(false)
+	public static class Regenerate extends Event {
+		@Label("Widget")
+		public String widget;
+		@Label("Start Index")
+		public int startIndex;
+		@Label("End Index")
+		public int endIndex;
+		@Label("Pixels Per Frame")
+		public float unit;
+		@Label("Columns")
+		@Description("pixel columns redrawn")
+		public int columns;
+	}
+
+	@Name("judahzone.scope.SpectrometerRedraw")
+	@Label("Spectrometer Redraw")
+	@Category({ "Zone Scope", "Rendering" })
+	@StackTrace(false)
+	public static class SpectrometerRedraw extends Event {
+		@Label("Bins")
+		public int bins;
+		@Label("Width")
+		public int width;
+	}
+
+	@Name("judahzone.scope.FramesSkipped")
+	@Label("Live Frames Skipped")
+	@Category({ "Zone Scope", "Rendering" })
+	@Description("Live frames dropped on a full FrameScheduler ring or coalesced out of the Spectrometer in one drain")
+	@StackTrace(false)
+	public static class FramesSkipped extends Event {
+		@Label("Dropped")
+		public long dropped;
+		@Label("Coalesced")
+		public long coalesced;
+	}
+
+}
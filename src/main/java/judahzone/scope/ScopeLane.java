@@ -0,0 +1,109 @@
+package judahzone.scope;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import judahzone.data.Transform;
+
+/** A live input analyzed beside the scope's main mix: a mixer channel the host feeds, or one side
+ * of the main input (a tap).  Each lane owns a LiveTransformer, a FrameScheduler and a TimeDomain
+ * lane; its frames are analyzed on the executor shared by all lanes, one at a time per lane and
+ * lanes in parallel.  JudahScope.addLane() creates them, its source selector picks which one
+ * feeds the Spectrometer. */
+public class ScopeLane implements Closeable {
+
+	public static enum Input { STEREO, LEFT, RIGHT }
+
+	/** -Dzone.scope.lanes=N analysis threads shared by every lane and the stereo view (default: cores - 1) */
+	public static final int WORKERS = Math.max(1, Integer.getInteger("zone.scope.lanes", FileAnalyzer.WORKERS - 1));
+	/** lanes waiting for a thread, beyond it a lane's frames wait for its next callback */
+	private static final int BACKLOG = 64;
+	private static ExecutorService pool;
+
+	private final String name;
+	private final Input input;
+	private final boolean tap;
+	private final FrameDb db;
+	private final TimeDomain timeDomain;
+	private final FrameScheduler scheduler;
+	private final LiveTransformer analyzer;
+
+	static synchronized ExecutorService pool() {
+		if (pool == null)
+			pool = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(BACKLOG), r -> {
+						Thread t = new Thread(r, ScopeLane.class.getSimpleName());
+						t.setDaemon(true);
+						return t;
+					});
+		return pool;
+	}
+
+	ScopeLane(JudahScope scope, String name, Input input, boolean tap, int width) {
+		this.name = name;
+		this.input = input;
+		this.tap = tap;
+		db = new TransformDb(width / 2);
+		scheduler = new FrameScheduler(t -> {
+			if (scope.isActive())
+				column(t);
+		}, t -> scope.latest(this, t));
+		// stamps the lane's own Latency, the main one times the main TimeDomain
+		timeDomain = new TimeDomain(scope, width, db, scheduler.getLatency());
+		analyzer = new LiveTransformer(scheduler::offer, scheduler.getLatency(), pool()) {
+			@Override public void process(float[] left, float[] right) {
+				switch (input) {
+					case STEREO -> super.process(left, right);
+					case LEFT -> super.process(left, left);
+					case RIGHT -> super.process(right, right);
+				}
+			}
+		};
+		scheduler.start();
+	}
+
+	private void column(Transform t) {
+		timeDomain.analyze(t);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Input getInput() {
+		return input;
+	}
+
+	/** fed the main input's audio by JudahScope, rather than by the host */
+	public boolean isTap() {
+		return tap;
+	}
+
+	/** the host calls process(left, right) on it from the lane's audio callback */
+	public LiveTransformer getAnalyzer() {
+		return analyzer;
+	}
+
+	public TimeDomain getTimeDomain() {
+		return timeDomain;
+	}
+
+	/** show the live frames from the newest (LIVE_ROLLING) */
+	void rewind() {
+		timeDomain.setData(db, null);
+		timeDomain.fullRange();
+	}
+
+	@Override public void close() {
+		analyzer.close();
+		scheduler.close();
+	}
+
+	@Override public String toString() {
+		return name;
+	}
+
+}
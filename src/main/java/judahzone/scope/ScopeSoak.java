@@ -0,0 +1,246 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import javax.swing.JToggleButton;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import judahzone.data.Recording;
+import judahzone.data.Transform;
+import judahzone.util.Constants;
+import judahzone.util.MP3;
+
+/** Headless render benchmark/soak: feeds a looping Transform stream (synthetic sweep or the
+ * first frames of an audio file) through TimeDomain and Spectrometer as in LIVE_ROLLING, paints
+ * both into an offscreen image at a target frame rate and reports achieved fps, frame render
+ * percentiles, GC pauses and heap growth.  No display or sound device needed.
+ *
+ * <pre>java -cp zone-scope-shaded.jar judahzone.scope.ScopeSoak seconds=600 fps=40 width=1100 [file=x.wav]</pre>
+ * Exits 1 if the achieved rate falls under 95% of the target. */
+public class ScopeSoak {
+
+	private static final int SPECTROMETER_HEIGHT = 300;
+	/** distinct Transforms in the loop */
+	private static final int LOOP = 512;
+	private static final int REPORT_SECONDS = 10;
+
+	private final int seconds;
+	private final int fps;
+	private final int width;
+	private final int warmup;
+	private final Transform[] source;
+
+	private final Histogram frames = new Histogram();
+	private final Histogram pauses = new Histogram();
+	private volatile boolean measuring;
+
+	ScopeSoak(int seconds, int fps, int width, int warmup, Transform[] source) {
+		this.seconds = seconds;
+		this.fps = fps;
+		this.width = width;
+		this.warmup = warmup;
+		this.source = source;
+	}
+
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		int seconds = 60, fps = FrameScheduler.DEFAULT_FPS, width = 1100, warmup = 3;
+		File file = null;
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			String key = eq < 0 ? arg : arg.substring(0, eq);
+			String val = eq < 0 ? "" : arg.substring(eq + 1);
+			switch (key) {
+				case "seconds" -> seconds = Integer.parseInt(val);
+				case "fps" -> fps = Integer.parseInt(val);
+				case "width" -> width = Integer.parseInt(val);
+				case "warmup" -> warmup = Integer.parseInt(val);
+				case "file" -> file = new File(val);
+				default -> {
+					System.err.println("usage: ScopeSoak [seconds=60] [fps=" + FrameScheduler.DEFAULT_FPS
+							+ "] [width=1100] [warmup=3] [file=audio]");
+					System.exit(2);
+				}
+			}
+		}
+		Transform[] source = file == null ? synthetic() : load(file);
+		if (source == null || source.length == 0) {
+			System.err.println("No frames to render from " + file);
+			System.exit(2);
+		}
+		boolean ok = new ScopeSoak(seconds, fps, width, warmup, source).run();
+		System.exit(ok ? 0 : 1);
+	}
+
+	/** a sine sweeping 40 Hz .. 12 kHz over the loop, with a wobbling level and a little noise */
+	static Transform[] synthetic() {
+		Random random = new Random(LOOP);
+		Transform[] result = new Transform[LOOP];
+		float[] left = new float[FFT_SIZE];
+		float[] right = new float[FFT_SIZE];
+		double rate = Constants.sampleRate();
+		double phase = 0;
+		for (int frame = 0; frame < LOOP; frame++) {
+			double hz = 40 * Math.pow(300, frame / (double) LOOP);
+			float level = 0.1f + 0.4f * (float) Math.abs(Math.sin(frame * 0.05));
+			for (int i = 0; i < FFT_SIZE; i++) {
+				phase += 2 * Math.PI * hz / rate;
+				float noise = (random.nextFloat() - 0.5f) * 0.02f;
+				left[i] = level * (float) Math.sin(phase) + noise;
+				right[i] = level * (float) Math.sin(phase * 1.5) + noise;
+			}
+			result[frame] = FileAnalyzer.analyze(left, right);
+		}
+		return result;
+	}
+
+	/** up to LOOP frames from the start of the file */
+	static Transform[] load(File file) {
+		Recording rec = MP3.load(file);
+		if (rec == null)
+			return null;
+		TransformDb db = new TransformDb(Math.min(LOOP, FileAnalyzer.frames(rec)));
+		FileAnalyzer.analyze(rec, db, file.getName());
+		Transform[] result = new Transform[db.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = db.get(i);
+		return result;
+	}
+
+	/** @return true if the target frame rate was held */
+	boolean run() {
+		TimeDomain timeDomain = new TimeDomain(null, width, new TransformDb(width / 2));
+		timeDomain.setSize(width, TimeDomain.TOTAL_HEIGHT);
+		Spectrometer spectrum = new Spectrometer(new Dimension(width, SPECTROMETER_HEIGHT), new JToggleButton("Live", true));
+		BufferedImage screen = new BufferedImage(width, SPECTROMETER_HEIGHT + TimeDomain.TOTAL_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D top = screen.createGraphics();
+		Graphics2D bottom = screen.createGraphics();
+		bottom.translate(0, SPECTROMETER_HEIGHT);
+
+		listenGc();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.out.println("ScopeSoak " + seconds + "s at " + fps + " fps, width " + width + ", "
+				+ source.length + " looped frames of " + source[0].magnitudes().length + " bins, warmup " + warmup + "s");
+
+		final long period = 1_000_000_000L / Math.max(1, fps);
+		final int warmupFrames = warmup * fps;
+		long heapStart = 0, gcCount = 0, gcMillis = 0, late = 0, start = 0;
+		long nextReport = 0;
+		int frame = 0;
+		long deadline = System.nanoTime();
+		long end = deadline + (warmup + (long) seconds) * 1_000_000_000L;
+		while (true) {
+			if (frame == warmupFrames) {
+				heapStart = settledHeap(memory);
+				gcCount = gcCount();
+				gcMillis = gcMillis();
+				measuring = true;
+				start = deadline = System.nanoTime();
+				end = start + seconds * 1_000_000_000L;
+				nextReport = start + REPORT_SECONDS * 1_000_000_000L;
+			}
+			long now = System.nanoTime();
+			if (now >= end)
+				break;
+			if (now < deadline)
+				LockSupport.parkNanos(deadline - now);
+			else if (now - deadline > period) { // a whole frame behind: don't burst to catch up
+				if (measuring)
+					late++;
+				deadline = now;
+			}
+
+			long t0 = System.nanoTime();
+			Transform t = source[frame % source.length];
+			timeDomain.analyze(t);
+			spectrum.analyze(t);
+			spectrum.paint(top);
+			timeDomain.paint(bottom);
+			long t1 = System.nanoTime();
+			if (measuring) {
+				frames.record(t1 - t0);
+				if (t1 >= nextReport) {
+					System.out.println(progress(t1 - start, memory));
+					nextReport += REPORT_SECONDS * 1_000_000_000L;
+				}
+			}
+			frame++;
+			deadline += period;
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		measuring = false;
+		top.dispose();
+		bottom.dispose();
+		long heapEnd = settledHeap(memory);
+
+		double achieved = frames.count() / elapsed;
+		System.out.println(String.format("fps %.2f of %d (late %d), frames %d in %.1fs",
+				achieved, fps, late, frames.count(), elapsed));
+		System.out.println("render " + frames + String.format(" (mean %.3f)", frames.mean() / 1e6));
+		System.out.println("gc " + (gcCount() - gcCount) + " collections, " + (gcMillis() - gcMillis)
+				+ " ms total, pauses " + pauses);
+		System.out.println("heap after gc " + mb(heapStart) + " -> " + mb(heapEnd) + " MB");
+		return achieved >= fps * 0.95;
+	}
+
+	private String progress(long nanos, MemoryMXBean memory) {
+		return String.format("%4ds fps %.1f frame p99 %s ms, gc pauses %d max %s ms, heap %d MB",
+				nanos / 1_000_000_000L, frames.count() * 1e9 / nanos, Histogram.millis(frames.percentile(99)),
+				pauses.count(), Histogram.millis(pauses.max()), mb(memory.getHeapMemoryUsage().getUsed()));
+	}
+
+	/** record stop-the-world collections (concurrent cycles are not pauses) while measuring */
+	private void listenGc() {
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (!(gc instanceof NotificationEmitter emitter))
+				continue;
+			emitter.addNotificationListener((notification, handback) -> {
+				if (!measuring || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+					return;
+				GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+				String name = info.getGcName();
+				if (name.contains("Concurrent") || name.contains("Cycles"))
+					return;
+				pauses.record(info.getGcInfo().getDuration() * 1_000_000L);
+			}, null, null);
+		}
+	}
+
+	private static long gcCount() {
+		long result = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			result += Math.max(0, gc.getCollectionCount());
+		return result;
+	}
+
+	private static long gcMillis() {
+		long result = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			result += Math.max(0, gc.getCollectionTime());
+		return result;
+	}
+
+	/** heap in use after a full collection, the baseline for leak checks */
+	private static long settledHeap(MemoryMXBean memory) {
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	private static long mb(long bytes) {
+		return bytes >> 20;
+	}
+
+}
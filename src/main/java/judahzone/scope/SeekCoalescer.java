@@ -0,0 +1,66 @@
+package judahzone.scope;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import judahzone.util.Threads;
+
+/** Latest-wins seeking for caret clicks and drags: only the most recent target is kept, at most
+ * one seek runs at a time off the EDT, and while scrubbing seeks are spaced SCRUB_MILLIS apart. */
+public class SeekCoalescer {
+
+	/** minimum spacing of seeks while the caret is being dragged (~25 seeks/sec) */
+	public static final long SCRUB_MILLIS = 40;
+	private static final int NONE = Integer.MIN_VALUE;
+
+	private final IntConsumer seek;
+	private final AtomicInteger target = new AtomicInteger(NONE);
+	private final AtomicBoolean running = new AtomicBoolean();
+	private volatile boolean scrubbing;
+	/** worker only */
+	private long last;
+
+	public SeekCoalescer(IntConsumer seek) {
+		this.seek = seek;
+	}
+
+	/** replace any pending target with idx, start a worker if none is running */
+	public void seek(int idx) {
+		target.set(idx);
+		if (running.compareAndSet(false, true))
+			Threads.execute(this::run);
+	}
+
+	/** bound the seek rate while dragging, off again on release */
+	public void setScrubbing(boolean scrubbing) {
+		this.scrubbing = scrubbing;
+	}
+
+	private void run() {
+		do {
+			int idx;
+			while ((idx = target.getAndSet(NONE)) != NONE) {
+				if (scrubbing) {
+					long wait = last + SCRUB_MILLIS - System.currentTimeMillis();
+					if (wait > 0) {
+						try {
+							Thread.sleep(wait);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							break;
+						}
+						int newer = target.getAndSet(NONE);
+						if (newer != NONE)
+							idx = newer;
+					}
+				}
+				seek.accept(idx);
+				last = System.currentTimeMillis();
+			}
+			running.set(false);
+			// a target may have landed between the last poll and clearing the flag
+		} while (target.get() != NONE && running.compareAndSet(false, true));
+	}
+
+}
@@ -0,0 +1,259 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import judahzone.data.Transform;
+import judahzone.util.Constants;
+import judahzone.util.RTLogger;
+
+/** On-disk cache of analyzed files: magnitudes plus RMS/peak per frame, keyed by path, size,
+ * modified time, FFT size, hop and sample rate. Cache hits are memory-mapped, not read onto the heap.
+ *
+ * Layout (native byte order): header, audio size and modified time, UTF-8 audio path (padded to
+ * 8 bytes), frames*bins magnitudes, frames rms, frames peak.  The name only hashes the key, the
+ * header holds all of it and load() checks it. */
+public class SpectralCache {
+
+	static final File FOLDER = new File(System.getProperty("user.home"), ".zone-scope" + File.separator + "cache");
+	private static final int MAGIC = 0x5A535043; // ZSPC
+	private static final int VERSION = 3;
+	/** fixed part: magic, version, FFT size, hop, rate, frames, bins, path bytes, size, modified */
+	private static final int HEADER = 8 * Integer.BYTES + 2 * Long.BYTES;
+	/** -Dzone.scope.cache.mb, the folder's size cap; least recently used entries go first */
+	private static final long CAP_BYTES = Long.getLong("zone.scope.cache.mb", 2048) << 20;
+	/** keep each mapping well under the 2GB MappedByteBuffer limit */
+	private static final long SEGMENT_BYTES = 1L << 30;
+
+	/** sidecar name for an audio file in its current state */
+	static File sidecar(File audio) {
+		String key = audio.getAbsolutePath() + '|' + audio.length() + '|' + audio.lastModified()
+				+ '|' + FFT_SIZE + '|' + FileAnalyzer.HOP + '|' + Constants.sampleRate();
+		return new File(FOLDER, audio.getName() + "." + Integer.toHexString(key.hashCode()) + ".spec");
+	}
+
+	/** start of the frame data after a header naming path */
+	private static int data(byte[] path) {
+		return (HEADER + path.length + 7) & ~7;
+	}
+
+	private static byte[] path(File audio) {
+		return audio.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/** @return a mapped view of the cached analysis, or null on a miss/stale/corrupt entry */
+	public static FrameDb load(File audio) {
+		File cache = sidecar(audio);
+		if (!cache.isFile())
+			return null;
+		try (FileChannel ch = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.nativeOrder());
+			if (!readFully(ch, header))
+				return null;
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != FFT_SIZE
+					|| header.getInt() != FileAnalyzer.HOP || header.getInt() != Constants.sampleRate())
+				return null;
+			int frames = header.getInt();
+			int bins = header.getInt();
+			final byte[] path = path(audio);
+			if (header.getInt() != path.length || header.getLong() != audio.length()
+					|| header.getLong() != audio.lastModified())
+				return null;
+			ByteBuffer stored = ByteBuffer.allocate(path.length);
+			if (!readFully(ch, stored) || !Arrays.equals(stored.array(), path))
+				return null; // another file's spectra under a colliding name
+			final int data = data(path);
+			long expected = data + 4L * frames * (bins + 2L);
+			if (frames <= 0 || bins <= 0 || ch.size() != expected)
+				return null;
+			cache.setLastModified(System.currentTimeMillis()); // recently used, for evict()
+			return new Mapped(ch, data, frames, bins); // mappings outlive the channel
+		} catch (IOException e) {
+			RTLogger.warn(SpectralCache.class, e);
+			return null;
+		}
+	}
+
+	/** write db (every frame present) to the cache, replacing any previous entry */
+	public static void save(File audio, FrameDb db) {
+		final int frames = db.size();
+		final int bins = db.bins();
+		if (frames == 0 || bins == 0)
+			return;
+		for (int i = 0; i < frames; i++)
+			if (!db.has(i))
+				return; // partial analysis, don't cache
+		File target = sidecar(audio);
+		File tmp = new File(FOLDER, target.getName() + ".tmp");
+		try {
+			Files.createDirectories(FOLDER.toPath());
+			try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				final byte[] path = path(audio);
+				final int data = data(path);
+				ByteBuffer buf = ByteBuffer.allocate(Math.max(data, bins * Float.BYTES)).order(ByteOrder.nativeOrder());
+				buf.putInt(MAGIC).putInt(VERSION).putInt(FFT_SIZE).putInt(FileAnalyzer.HOP).putInt(Constants.sampleRate())
+						.putInt(frames).putInt(bins).putInt(path.length).putLong(audio.length())
+						.putLong(audio.lastModified()).put(path).position(data).flip();
+				writeFully(ch, buf);
+
+				float[] scratch = new float[bins];
+				FloatBuffer floats = buf.clear().asFloatBuffer(); // over the whole buffer, not the drained header
+				for (int i = 0; i < frames; i++) {
+					floats.clear();
+					floats.put(db.magnitudes(i, scratch), 0, bins);
+					buf.clear().limit(bins * Float.BYTES);
+					writeFully(ch, buf);
+				}
+				ByteBuffer levels = ByteBuffer.allocate(frames * Float.BYTES).order(ByteOrder.nativeOrder());
+				for (int i = 0; i < frames; i++)
+					levels.putFloat(db.rms(i));
+				writeFully(ch, levels.flip());
+				levels.clear();
+				for (int i = 0; i < frames; i++)
+					levels.putFloat(db.peak(i));
+				writeFully(ch, levels.flip());
+			}
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			RTLogger.warn(SpectralCache.class, e);
+			tmp.delete();
+			return;
+		}
+		evict(audio, target);
+	}
+
+	/** drop entries for earlier states (or settings) of audio, then the least recently used
+	 * entries while the folder is over CAP_BYTES */
+	private static void evict(File audio, File keep) {
+		File[] entries = FOLDER.listFiles((dir, name) -> name.endsWith(".spec"));
+		if (entries == null)
+			return;
+		final String prefix = audio.getName() + ".";
+		final byte[] path = path(audio);
+		long total = 0;
+		for (File f : entries) {
+			if (!f.equals(keep) && f.getName().startsWith(prefix) && ownedBy(f, path))
+				f.delete();
+			else
+				total += f.length();
+		}
+		if (total <= CAP_BYTES)
+			return;
+		Arrays.sort(entries, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+		for (File f : entries) {
+			if (total <= CAP_BYTES)
+				break;
+			if (f.equals(keep) || !f.isFile())
+				continue;
+			long size = f.length();
+			if (f.delete())
+				total -= size;
+		}
+	}
+
+	/** @return true if cache was written for path, or is unreadable or from an older version */
+	private static boolean ownedBy(File cache, byte[] path) {
+		try (FileChannel ch = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.nativeOrder());
+			if (!readFully(ch, header) || header.getInt() != MAGIC || header.getInt() != VERSION)
+				return true;
+			header.position(7 * Integer.BYTES);
+			if (header.getInt() != path.length)
+				return false;
+			ByteBuffer stored = ByteBuffer.allocate(path.length);
+			return !readFully(ch, stored) || Arrays.equals(stored.array(), path);
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	/** fill buf from ch and flip it. @return false at end of file */
+	private static boolean readFully(FileChannel ch, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			if (ch.read(buf) < 0)
+				return false;
+		buf.flip();
+		return true;
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining())
+			ch.write(buf);
+	}
+
+	/** read-only FrameDb over a mapped cache file */
+	static class Mapped implements FrameDb {
+
+		private final int frames;
+		private final int bins;
+		/** frames per magnitudes segment */
+		private final int span;
+		private final FloatBuffer[] magnitudes;
+		private final FloatBuffer rms;
+		private final FloatBuffer peak;
+
+		Mapped(FileChannel ch, int data, int frames, int bins) throws IOException {
+			this.frames = frames;
+			this.bins = bins;
+			long frameBytes = (long) bins * Float.BYTES;
+			span = (int) Math.max(1, SEGMENT_BYTES / frameBytes);
+			magnitudes = new FloatBuffer[(frames + span - 1) / span];
+			for (int s = 0; s < magnitudes.length; s++) {
+				int count = Math.min(span, frames - s * span);
+				magnitudes[s] = map(ch, data + s * span * frameBytes, count * frameBytes);
+			}
+			long levels = data + frames * frameBytes;
+			rms = map(ch, levels, (long) frames * Float.BYTES);
+			peak = map(ch, levels + (long) frames * Float.BYTES, (long) frames * Float.BYTES);
+		}
+
+		private static FloatBuffer map(FileChannel ch, long position, long size) throws IOException {
+			MappedByteBuffer mapped = ch.map(MapMode.READ_ONLY, position, size);
+			return mapped.order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+
+		@Override public int size() {
+			return frames;
+		}
+
+		@Override public boolean has(int idx) {
+			return true;
+		}
+
+		@Override public int bins() {
+			return bins;
+		}
+
+		@Override public float[] magnitudes(int idx, float[] scratch) {
+			magnitudes[idx / span].get((idx % span) * bins, scratch, 0, bins);
+			return scratch;
+		}
+
+		@Override public float rms(int idx) {
+			return rms.get(idx);
+		}
+
+		@Override public float peak(int idx) {
+			return peak.get(idx);
+		}
+
+		@Override public void set(int idx, Transform t) {
+			throw new UnsupportedOperationException("cached analysis is read-only");
+		}
+	}
+
+}
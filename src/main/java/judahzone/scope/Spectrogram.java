@@ -1,7 +1,7 @@
 package judahzone.scope;
 
-import java.awt.Color;
 import java.awt.Dimension;
+import java.util.Arrays;
 
 import be.tarsos.dsp.util.PitchConverter;
 import judahzone.data.Transform;
@@ -15,9 +15,34 @@ public class Spectrogram extends TimeWidget {
 
 	private static final float S_RATE = Constants.sampleRate();
 	private static final float DURATION = S_RATE / WavConstants.FFT_SIZE;
-
-	public Spectrogram(Dimension size, Transform[] data) {
+	private static final double LOG_NORM = Math.log1p(1.0000001);
+	private static final int WHITE = BACKGROUND.getRGB();
+
+	/** intensity -> ARGB */
+	private int[] colormap = defaultColormap(256);
+	/** per-row accumulator, reused for every column */
+	private final float[] rows;
+	/** per-row colormap position */
+	private final float[] ramp;
+	private final Kernels kernels = Kernels.SELECTED;
+
+	private static final int OFF = Integer.MIN_VALUE;
+	private float minFrequency = 40; // Hz
+	private float maxFrequency = 10000; // Hz
+	/** FFT bin -> top pixel row (OFF if outside the frequency range) */
+	private int[] binRow = new int[0];
+	/** FFT bin -> share of its amplitude that falls into the next row down */
+	private float[] binWeight;
+
+	/** magnitudes copy-out for stores without backing arrays */
+	private float[] scratch = new float[0];
+	/** max-combined magnitudes for zoomed-out columns */
+	private float[] column = new float[0];
+
+	public Spectrogram(Dimension size, FrameDb data) {
 		super(size, data);
+		rows = new float[h];
+		ramp = new float[h];
 	}
 
 	@Override
@@ -30,75 +55,126 @@ public class Spectrogram extends TimeWidget {
 	}
 
 	@Override
-	void generateImage(float unit, int startIndex, int endIndex) {
-		clearRect(0, w);
-		if (startIndex < 0 || endIndex < 0 || startIndex >= db.length)
-			return;
-		if (endIndex >= db.length)
-			endIndex = db.length - 1;
-
-		int visibleCount = endIndex - startIndex + 1;
-		if (visibleCount <= 0)
-			return;
+	void drawCell(int xOnScreen, int idx, int cellWidth) {
+		int bins = db.bins();
+		if (scratch.length != bins) {
+			scratch = new float[bins];
+			column = new float[bins];
+		}
+		drawX(xOnScreen, db.magnitudes(idx, scratch), cellWidth);
+	}
 
-		for (int i = 0; i < visibleCount; i++) {
-			int dbIndex = startIndex + i;
-			Transform t = dbIndex >= 0 && dbIndex < db.length ? db[dbIndex] : null;
-			if (t == null)
+	@Override
+	void drawColumn(int x, FrameDb level, int from, int to) {
+		int bins = level.bins();
+		if (scratch.length != bins) {
+			scratch = new float[bins];
+			column = new float[bins];
+		}
+		boolean any = false;
+		for (int i = from; i <= to; i++) {
+			if (!level.has(i))
 				continue;
+			float[] mags = level.magnitudes(i, scratch);
+			if (!any) {
+				System.arraycopy(mags, 0, column, 0, bins);
+				any = true;
+			} else
+				kernels.maxInto(column, mags, bins);
+		}
+		if (any)
+			drawX(x, column, 1);
+	}
+
+	/** Blue-ish intensity ramp, white (silence) .. (0, 127, 255) */
+	public static int[] defaultColormap(int size) {
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++) {
+			int grey = size == 1 ? 0 : i * 255 / (size - 1);
+			result[i] = 0xFF000000 | (255 - grey) << 16 | (255 - grey / 2) << 8 | 255;
+		}
+		return result;
+	}
 
-			int xOnScreen = Math.round(i * unit);
-			int nextX = Math.round((i + 1) * unit);
-			int cellWidth = Math.max(1, nextX - xOnScreen);
+	/** @param argb intensity -> packed ARGB, index 0 silent, any length >= 1 */
+	public void setColormap(int[] argb) {
+		if (argb != null && argb.length > 0)
+			colormap = argb;
+	}
+
+	/** frequency window shown top (maxHz) to bottom (minHz), rebuilds the row table */
+	public void setFrequencyRange(float minHz, float maxHz) {
+		if (minHz <= 0 || maxHz <= minHz)
+			return;
+		minFrequency = minHz;
+		maxFrequency = maxHz;
+		binRow = new int[0];
+	}
 
-			drawX(xOnScreen, t.magnitudes(), cellWidth);
+	/** Precompute each FFT bin's pixel row (log/cent scale) and its fractional spill into the row
+	 * below, so the per-column loop is table lookups only. Rebuilt when bins, height or range change. */
+	private void mapRows(int bins) {
+		binRow = new int[bins];
+		binWeight = new float[bins];
+		final double minCent = PitchConverter.hertzToAbsoluteCent(minFrequency);
+		final double maxCent = PitchConverter.hertzToAbsoluteCent(maxFrequency);
+		for (int i = 0; i < bins; i++) {
+			double freqHz = i * DURATION; // correct bin frequency
+			if (i == 0 || freqHz <= minFrequency || freqHz >= maxFrequency) {
+				binRow[i] = OFF;
+				continue;
+			}
+			double absCent = PitchConverter.hertzToAbsoluteCent(freqHz);
+			double y = h - 1 - (absCent - minCent) / (maxCent - minCent) * h;
+			int row = (int) Math.floor(y);
+			binRow[i] = row;
+			binWeight[i] = (float) (y - row);
 		}
-		drawBorder();
 	}
 
 	private void drawX(int xOnScreen, float[] amplitudes, int cellWidth) {
 
 		if (amplitudes == null || amplitudes.length == 0)
 			return;
+		int left = Math.max(0, xOnScreen);
+		int right = Math.min(w, xOnScreen + cellWidth);
+		if (right <= left)
+			return;
+		if (binRow.length != amplitudes.length)
+			mapRows(amplitudes.length);
 
-		float maxAmplitude = 0f;
-		int height = getHeight();
-		float[] pixeledAmplitudes = new float[height];
+		final int height = h;
+		final float[] pixeledAmplitudes = rows;
+		final int[] toRow = binRow;
+		final float[] spill = binWeight;
+		Arrays.fill(pixeledAmplitudes, 0f);
 
 		for (int i = 1; i < amplitudes.length - 1; i++) { // skip DC at i=0 && i=length
-			double freqHz = i * DURATION; // correct bin frequency
-			int pixelY = frequencyToBin(freqHz);
-			if (pixelY < 0 || pixelY >= height)
+			int row = toRow[i];
+			if (row == OFF)
 				continue; // ignore out-of-range
-			pixeledAmplitudes[pixelY] += amplitudes[i];
-			if (pixeledAmplitudes[pixelY] > maxAmplitude)
-				maxAmplitude = pixeledAmplitudes[pixelY];
+			float amp = amplitudes[i];
+			float below = spill[i];
+			if (row >= 0)
+				pixeledAmplitudes[row] += amp * (1f - below);
+			if (below > 0f && row + 1 < height)
+				pixeledAmplitudes[row + 1] += amp * below;
 		}
-
-		// draw the pixels
-		for (int y = 1; y < pixeledAmplitudes.length - 2; y++) {
-			Color color = BACKGROUND;
-			if (maxAmplitude != 0) {
-				final int greyValue = (int) (Math.log1p(pixeledAmplitudes[y] / maxAmplitude)
-						/ Math.log1p(1.0000001) * 255);
-				color = new Color(255 - greyValue, 255 - greyValue / 2, 255);
-			}
-			g2d.setColor(color);
-			g2d.fillRect(xOnScreen, y, cellWidth, 1);
+		float maxAmplitude = kernels.max(pixeledAmplitudes, 0, height);
+
+		// write the pixels
+		final int[] lut = colormap;
+		final int top = lut.length - 1;
+		if (maxAmplitude != 0)
+			kernels.logRamp(pixeledAmplitudes, ramp, height, 1f / maxAmplitude, (float) (top / LOG_NORM));
+		for (int y = 1; y < height - 2; y++) {
+			int argb = WHITE;
+			if (maxAmplitude != 0)
+				argb = lut[Math.max(0, Math.min(top, (int) ramp[y]))];
+			int row = y * w;
+			for (int x = left; x < right; x++)
+				pixels[row + x] = argb;
 		}
 	}
 
-	private int frequencyToBin(final double frequency) {
-		final double minFrequency = 40; // Hz
-		final double maxFrequency = 10000; // Hz
-		int bin = 0;
-		if (frequency != 0 && frequency > minFrequency && frequency < maxFrequency) {
-			final double minCent = PitchConverter.hertzToAbsoluteCent(minFrequency);
-			final double maxCent = PitchConverter.hertzToAbsoluteCent(maxFrequency);
-			final double absCent = PitchConverter.hertzToAbsoluteCent(frequency);
-			double binEstimate = (absCent - minCent) / (maxCent - minCent) * getHeight();
-			bin = getHeight() - 1 - (int) binEstimate;
-		}
-		return bin;
-	}
-}
\ No newline at end of file
+}
@@ -61,14 +61,54 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
     /* Graphics / buffers */
     private BufferedImage img;
     private Graphics2D g2d;
+    private static final Color OVERLAY = new Color(220, 60, 60);
+    private static final Color[] PALETTE = new Color[256];
+    static {
+        for (int i = 0; i < PALETTE.length; i++)
+            PALETTE[i] = new Color(255 - i, 255 - i / 2, 255);
+    }
 
-    private Transform cache;
+    /* Labels: log-spaced majors with minor ticks between them */
+    private static final int MINOR_TICKS = 2;
+    private static final String[] MAJOR = new String[9];
+    static {
+        final double ratio = (double) maxFreq / minFreq;
+        for (int i = 0; i < MAJOR.length; i++) {
+            double freqMajor = minFreq * Math.pow(ratio, i / (double) (MAJOR.length - 1));
+            MAJOR[i] = (freqMajor >= 1000.0) ?
+                    String.format("%.1fk", freqMajor / 1000.0) : String.format("%d", Math.round(freqMajor));
+        }
+    }
+    private final int[] majorX = new int[MAJOR.length];
+    private final int[] minorX = new int[(MAJOR.length - 1) * MINOR_TICKS];
+
+    /* Per-frame tables and buffers, rebuilt by layout() when width or bin count change */
+    private int layoutWidth = -1;
+    private int layoutBins = -1;
+    private int bars;
+    private float barWidth;
+    private int[] barLeft, barRight;
+    private float[] tiltGain;
+    private float[] power;
+    private float[] barPower;
+    private float[] barDb;
+    /** second spectrum of the stereo view, drawn as a line over the bars */
+    private float[] overlayPower;
+    private float[] overlayBars;
+    private final Kernels kernels = Kernels.SELECTED;
+    private float thresholdDb;
+    private float thresholdDenom;
+
+    private float[] cache;
+    private float cacheRms;
+    private float[] cacheOverlay;
     private final JToggleButton live;
     private final JSlider dampen = new JSlider(0, 100, 50); // sensitivity: 0 (strict) .. 100 (show many)
 	private final JSlider ySlider= new JSlider(1, 100, 50);  // height multiplier control (logarithmic)
     private final JCheckBox tilt = new JCheckBox("  Tilt", false);
 	private int yScale = 50;
     private int sensitivity = 50;
+    private Latency latency;
 
 
     public Spectrometer(Dimension sz, JToggleButton live) {
@@ -90,9 +130,30 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
     }
 
 	public void analyze(Transform t) {
-		drawImage(t);
+		analyze(t.magnitudes(), t.rms().rms());
+	}
+
+	/** @param magnitudes FFT modulus per bin (kept for slider redraws)
+	 *  @param rms frame RMS driving level-following */
+	public void analyze(float[] magnitudes, float rms) {
+		analyze(magnitudes, rms, null);
+	}
+
+	/** @param overlay a second spectrum of the same bin count (stereo view), drawn as a line
+	 *  on the bars' scale, or null (kept for slider redraws with magnitudes) */
+	public void analyze(float[] magnitudes, float rms, float[] overlay) {
+		ScopeEvents.SpectrometerRedraw event = new ScopeEvents.SpectrometerRedraw();
+		event.begin();
+		drawImage(magnitudes, rms, overlay);
+		if (event.shouldCommit()) {
+			event.bins = magnitudes.length;
+			event.width = img.getWidth();
+			event.commit();
+		}
 		repaint();
-		cache = t;
+		cache = magnitudes;
+		cacheRms = rms;
+		cacheOverlay = overlay;
     }
 
 	public void clear() {
@@ -103,41 +164,88 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
         g2d.fillRect(0, 0, w, h);
 	}
 
+    /** (Re)build everything that only depends on width and bin count: bar -> bin ranges,
+     * tilt gains, label positions and the per-frame power buffers. */
+    private void layout(int w, int binsTotal) {
+        layoutWidth = w;
+        layoutBins = binsTotal;
+
+        // compute absolute bin range used for calculations (clamp to available bins)
+        int startBinCalc = (int) Math.ceil(minFreq * DURATION);
+        startBinCalc = Math.max(0, Math.min(binsTotal - 1, startBinCalc));
+        int endBinCalc = (int) Math.floor(maxFreq * DURATION);
+        endBinCalc = Math.max(0, Math.min(binsTotal - 1, endBinCalc));
+        final int binsDisplay = endBinCalc - startBinCalc + 1;
+
+        bars = Math.min(binsDisplay, Math.max(1, w));
+        barWidth = Math.max(1, w / (float) bars);
+        power = new float[binsTotal];
+        barPower = new float[bars];
+        barDb = new float[bars];
+        overlayPower = new float[binsTotal];
+        overlayBars = new float[bars];
+        barLeft = new int[bars];
+        barRight = new int[bars];
+        tiltGain = new float[bars];
+
+        /* Bars use absolute bin indices into power[]: for each visual bar compute freqLeft/freqRight
+         * (log spacing), map to bins and clamp to the display range. */
+        final double ratio = maxFreq / (double) minFreq;
+        for (int bx = 0; bx < bars; bx++) {
+            double fracLeft = (bars == 1) ? 0.0 : (double) bx / (double) bars;
+            double fracRight = (bars == 1) ? 1.0 : (double) (bx + 1) / (double) bars;
+            int binLeft = (int) Math.floor(minFreq * Math.pow(ratio, fracLeft) * DURATION);
+            int binRight = (int) Math.ceil(minFreq * Math.pow(ratio, fracRight) * DURATION);
+            binLeft = Math.max(startBinCalc, Math.min(endBinCalc, binLeft));
+            binRight = Math.max(startBinCalc, Math.min(endBinCalc, binRight));
+            if (binRight < binLeft) binRight = binLeft;
+            barLeft[bx] = binLeft;
+            barRight[bx] = binRight;
+
+            // tilt: linear dB boost 0 -> TILT_RANGE_DB across the (log) band at the bar center, as power ratio
+            double normLog = (bars == 1) ? 0.0 : (bx + 0.5) / bars;
+            tiltGain[bx] = (float) Math.pow(10.0, normLog * TILT_RANGE_DB / 10.0);
+        }
+
+        for (int i = 0; i < MAJOR.length; i++)
+            majorX[i] = (int) Math.round(i / (double) (MAJOR.length - 1) * (w - 1));
+        for (int i = 0; i < minorX.length; i++) {
+            int major = i / MINOR_TICKS;
+            int m = i % MINOR_TICKS + 1;
+            minorX[i] = (int) Math.round((major + (double) m / (MINOR_TICKS + 1)) / (MAJOR.length - 1) * (w - 1));
+        }
+    }
+
     /**Draw frame using FFT modulus amplitudes and RMS.
-     * Horizontal axis is log-scaled between minFreq .. displayMaxFreq. */
-    private void drawImage(Transform t) {
+     * Horizontal axis is log-scaled between minFreq .. displayMaxFreq.
+     * Steady state allocates nothing: tables and buffers come from layout(), per-bin math from Kernels. */
+    private void drawImage(float[] amplitudes, float rms, float[] overlay) {
         int w = getWidth();
         int h = getHeight();
     	clear(w, h);
-    	float[] amplitudes = t.magnitudes();
         if (amplitudes == null || amplitudes.length == 0) {
             RTLogger.log(this, "no amplitudes");
             return;
         }
-
-        final int binsTotal = amplitudes.length; // expected fftSize/2 or fftSize/2+1
-        // compute absolute bin range used for calculations (clamp to available bins)
-        int startBinCalc = (int) Math.ceil(minFreq * DURATION);
-        startBinCalc = Math.max(0, Math.min(binsTotal - 1, startBinCalc));
-
-        int endBinCalc = (int) Math.floor(maxFreq * DURATION);
-        endBinCalc = Math.max(0, Math.min(binsTotal - 1, endBinCalc));
-
-        // compute display end bin (absolute) and bins to display (clamp)
-        final int binsDisplay = endBinCalc - startBinCalc + 1;
+        if (w != layoutWidth || amplitudes.length != layoutBins)
+            layout(w, amplitudes.length);
 
         // compute power for the full amplitude array (avoid missing upper bins)
-        Powers full = computeFullPowers(amplitudes);
+        float max = kernels.squares(amplitudes, power, amplitudes.length);
+        if (overlay != null && overlay.length != amplitudes.length)
+            overlay = null;
+        if (overlay != null)
+            max = Math.max(max, kernels.squares(overlay, overlayPower, overlay.length));
 
         // handle near-silence
-        if (full.max <= EPS) {
-            drawLabels(w, startBinCalc, endBinCalc);
+        if (max <= EPS) {
+            drawLabels(w);
             drawBorder();
             return;
         }
 
         // 2) compute frame RMS (prefer provided RMS object), and smooth for level-following
-        smoothFrameDb(t.rms().rms());
+        smoothFrameDb(rms);
 
         // height multiplier: yScale logarithmic slider combined with smoothed frame-level vs reference
         float logarithmic = Constants.logarithmic(yScale, 1, 2500);
@@ -145,73 +253,46 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
         heightMultiplier = Math.max(0f, Math.min(2f, heightMultiplier)); // clamp to avoid runaway heights
 
         // 3) aggregate bins into visual bars (log-horizontal axis)
-        final int bars = Math.min(binsDisplay, Math.max(1, w));
-        final float barWidth = Math.max(1, w / (float)bars);
-        double[] barAvgPower = aggregateBarsAbsolute(full.power, startBinCalc, endBinCalc, bars);
+        kernels.means(power, barLeft, barRight, barPower, bars);
+        if (overlay != null)
+            kernels.means(overlayPower, barLeft, barRight, overlayBars, bars);
 
         // If tilt compensation is requested, boost higher-frequency bars in power domain.
         // Tilt is applied before thresholding so sensitivity reflects the compensation.
         if (tilt.isSelected()) {
-            // ratio and log denom reused from aggregate logic
-            final double ratio = maxFreq / (double) minFreq;
-            final double logDenom = Math.log(ratio);
-
-            double maxAdjusted = 0.0;
-            for (int bx = 0; bx < bars; bx++) {
-                // compute fractional position for the bar center (0..1)
-                double frac = (bars == 1) ? 0.0 : (bx + 0.5) / bars;
-                // map to frequency (log scale)
-                double freq = minFreq * Math.pow(ratio, frac);
-                // normalized log position 0..1
-                double normLog = Math.log(freq / minFreq) / logDenom;
-                if (Double.isNaN(normLog) || normLog < 0.0) normLog = 0.0;
-                if (normLog > 1.0) normLog = 1.0;
-
-                // linear interpolation of dB boost from 0 -> TILT_RANGE_DB across the band
-                double tiltDb = normLog * TILT_RANGE_DB;
-                // convert dB to power multiplier (power ratio)
-                double powerMul = Math.pow(10.0, tiltDb / 10.0);
-
-                barAvgPower[bx] = barAvgPower[bx] * powerMul;
-                if (barAvgPower[bx] > maxAdjusted) maxAdjusted = barAvgPower[bx];
-            }
             // compute threshold based on adjusted bar powers
-            float[] th = computeThreshold(maxAdjusted, sensitivity);
-            float thresholdDb = th[0];
-            float denom = th[1];
-
-            // 5) render bars (color intensity independent of height multiplier)
-            renderBars(barAvgPower, bars, barWidth, h, thresholdDb, denom, heightMultiplier);
-
+            float maxAdjusted = kernels.scale(barPower, tiltGain, bars);
+            if (overlay != null)
+                maxAdjusted = Math.max(maxAdjusted, kernels.scale(overlayBars, tiltGain, bars));
+            computeThreshold(maxAdjusted, sensitivity);
         } else {
-            // 4) compute sensitivity threshold from full.max (unchanged behavior)
-            float[] th = computeThreshold(full.max, sensitivity);
-            float thresholdDb = th[0];
-            float denom = th[1];
-
-            // 5) render bars (color intensity independent of height multiplier)
-            renderBars(barAvgPower, bars, barWidth, h, thresholdDb, denom, heightMultiplier);
+            // 4) compute sensitivity threshold from full max (unchanged behavior)
+            computeThreshold(max, sensitivity);
         }
 
+        // 5) render bars (color intensity independent of height multiplier)
+        renderBars(h, heightMultiplier);
+        if (overlay != null)
+            renderOverlay(h, heightMultiplier);
+
         // draw labels and border
-        drawLabels(w, startBinCalc, endBinCalc);
+        drawLabels(w);
         drawBorder();
     }
 
     /**Render visual bars. Color is driven by normalizedColor (relative to threshold),
      * height is driven by normalizedColor * heightMultiplier (so height follows absolute level). */
-    private void renderBars(double[] barAvgPower, int bars, float barWidth, int height,
-                            float thresholdDb, float denom, float heightMultiplier) {
+    private void renderBars(int height, float heightMultiplier) {
     	int bar = (int) Math.ceil(barWidth);
+    	kernels.db(barPower, barDb, bars);
 
         for (int bx = 0; bx < bars; bx++) {
-            double avgP = barAvgPower[bx];
-            float db = (float) (10.0 * Math.log10(avgP + EPS));
+            float db = barDb[bx];
 
             // apply sensitivity threshold
             if (db <= thresholdDb) continue;
 
-            float normalizedColor = (db - thresholdDb) / denom;
+            float normalizedColor = (db - thresholdDb) / thresholdDenom;
             normalizedColor = Math.max(0f, Math.min(1f, normalizedColor));
 
             // height responds to absolute level via heightMultiplier
@@ -224,76 +305,15 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
 
             int intensity = (int) (normalizedColor * 255f);
             intensity = Math.max(0, Math.min(255, intensity));
-            Color color = new Color(255 - intensity, 255 - intensity / 2, 255);
 
-            g2d.setColor(color);
+            g2d.setColor(PALETTE[intensity]);
             g2d.fillRect(x, y, bar, barHeight);
         }
     }
 
-
-    /** container for power[binIndex] (absolute indexing) */
-    record Powers(double[] power, double max) { }
-
-    /** Compute power for the full amplitudes array (mag^2) and return global max, no sliced-power buffers */
-    private Powers computeFullPowers(float[] amplitudes) {
-        double[] power = new double[amplitudes.length];
-        double max = 0.0;
-        for (int i = 0; i < amplitudes.length; i++) {
-            float mag = amplitudes[i];
-            if (!Float.isFinite(mag) || mag < 0f) mag = 0f;
-            double p = mag * (double) mag;
-            power[i] = p;
-            if (p > max) max = p;
-        }
-        return new Powers(power, max);
-    }
-
-    /** Aggregate power into bars using absolute bin indices:
-     * - startBinAbs .. endBinDisplayAbs are ABSOLUTE bin indices into the power[] array.
-     * - For each visual bar we compute freqLeft/freqRight (log spacing) and map to absolute bin indices,
-     *   clamp them, and average power across that inclusive bin range. */
-    private double[] aggregateBarsAbsolute(double[] powerFull, int startBinAbs, int endBinDisplayAbs, int bars) {
-        double[] out = new double[bars];
-        double ratio = maxFreq / minFreq;
-
-        for (int bx = 0; bx < bars; bx++) {
-            double fracLeft = (bars == 1) ? 0.0 : (double) bx / (double) bars;
-            double fracRight = (bars == 1) ? 1.0 : (double) (bx + 1) / (double) bars;
-            double freqLeft = minFreq * Math.pow(ratio, fracLeft);
-            double freqRight = minFreq * Math.pow(ratio, fracRight);
-
-            // absolute bin indices
-            int binLeft = (int) Math.floor(freqLeft * DURATION);
-            int binRight = (int) Math.ceil(freqRight * DURATION);
-
-            // clamp to requested display range and available array bounds
-            if (binLeft < startBinAbs) binLeft = startBinAbs;
-            if (binRight < startBinAbs) binRight = startBinAbs;
-            if (binLeft > endBinDisplayAbs) binLeft = endBinDisplayAbs;
-            if (binRight > endBinDisplayAbs) binRight = endBinDisplayAbs;
-            if (binRight < binLeft) binRight = binLeft;
-
-            double sum = 0.0;
-            int count = 0;
-            for (int b = binLeft; b <= binRight; b++) {
-                sum += powerFull[b];
-                count++;
-            }
-            if (count == 0) {
-                // fallback to nearest single bin
-                int nearest = Math.max(startBinAbs, Math.min(endBinDisplayAbs, (binLeft + binRight) / 2));
-                sum = powerFull[nearest];
-                count = 1;
-            }
-            out[bx] = sum / count;
-        }
-        return out;
-    }
-
     /** Smooth RMS-derived dB into smoothedFrameDb using attack/release behavior. */
     private void smoothFrameDb(double frameRms) {
-        double frameDb = 20.0 * Math.log10(frameRms + EPS);
+        double frameDb = FastMath.dbAmplitude((float) (frameRms + EPS));
         if (frameDb > smoothedFrameDb) {
             smoothedFrameDb = (float) (smoothedFrameDb * (1.0 - levelAttack) + frameDb * levelAttack);
         } else {
@@ -301,16 +321,31 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
         }
     }
 
-    /** Compute threshold dB and denom for normalization based on slider sensitivity.
-     * Returns float[]{ thresholdDb, denom }. */
-    private float[] computeThreshold(double globalMaxPower, int sliderValue) {
+    /** Second spectrum as a line through the bar centers, on the bars' threshold and height scale. */
+    private void renderOverlay(int height, float heightMultiplier) {
+        kernels.db(overlayBars, barDb, bars); // the bars are drawn, reuse their dB buffer
+        g2d.setColor(OVERLAY);
+        int lastX = -1, lastY = 0;
+        for (int bx = 0; bx < bars; bx++) {
+            float normalized = Math.max(0f, Math.min(1f, (barDb[bx] - thresholdDb) / thresholdDenom));
+            float normalizedHeight = Math.max(0f, Math.min(1f, normalized * heightMultiplier));
+            int x = (int) ((bx + 0.5f) * barWidth);
+            int y = height - (int) (normalizedHeight * height);
+            if (lastX >= 0)
+                g2d.drawLine(lastX, lastY, x, y);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    /** Compute thresholdDb and thresholdDenom for normalization based on slider sensitivity. */
+    private void computeThreshold(float globalMaxPower, int sliderValue) {
         float s = Math.max(0f, Math.min(1f, sliderValue / 100f));
-        float maxDb = (float) (10.0 * Math.log10(globalMaxPower + EPS));
-        float thresholdDb = maxDb - (MIN_VISIBLE_RANGE_DB + s * (DISPLAY_RANGE_DB - MIN_VISIBLE_RANGE_DB));
+        float maxDb = FastMath.db(globalMaxPower + Kernels.EPS);
+        thresholdDb = maxDb - (MIN_VISIBLE_RANGE_DB + s * (DISPLAY_RANGE_DB - MIN_VISIBLE_RANGE_DB));
         thresholdDb = Math.max(thresholdDb, DB_FLOOR);
-        float denom = maxDb - thresholdDb;
-        if (denom < 1e-6f) denom = 1f;
-        return new float[] { thresholdDb, denom };
+        thresholdDenom = maxDb - thresholdDb;
+        if (thresholdDenom < 1e-6f) thresholdDenom = 1f;
     }
 
     private void drawBorder() {
@@ -324,46 +359,34 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
     }
 
     /** Draw log-spaced labels across the top between minFreq..displayMaxFreq.
-     * Shows major labels and minor ticks. */
-    private void drawLabels(int width, int startBin, int endBin) {
-        int majorCount = 9;
-        int minorTicks = 2;
-
+     * Shows major labels and minor ticks at positions from layout(). */
+    private void drawLabels(int width) {
+        if (width != layoutWidth)
+            return; // no layout yet (silence before the first frame)
         g2d.setColor(Color.BLACK);
         FontMetrics fm = g2d.getFontMetrics();
-
-        final double ratio = (double) maxFreq / minFreq;
-        final double logDenom = Math.log(ratio);
-
-        for (int i = 0; i < majorCount; i++) {
-            double majorFrac = (majorCount == 1) ? 0.0 : (double) i / (double) (majorCount - 1);
-            double freqMajor = minFreq * Math.pow(ratio, majorFrac);
-            double fracForX = (Math.log(freqMajor / minFreq) / logDenom);
-            int xMajor = (int) Math.round(fracForX * (width - 1));
-
-            final String label = (freqMajor >= 1000.0) ?
-                    String.format("%.1fk", freqMajor / 1000.0) : String.format("%d", Math.round(freqMajor));
-            int lw = fm.stringWidth(label);
-            int labelX = xMajor - lw / 2;
+        int labelY = 2 + fm.getAscent();
+        for (int i = 0; i < MAJOR.length; i++) {
+            int lw = fm.stringWidth(MAJOR[i]);
+            int labelX = majorX[i] - lw / 2;
             labelX = Math.max(0, Math.min(width - lw, labelX));
-            int labelY = 2 + fm.getAscent();
-            g2d.drawString(label, labelX, labelY);
-
-            if (minorTicks > 0 && i < majorCount - 1) {
-                for (int m = 1; m <= minorTicks; m++) {
-                    double subFrac = (i + (double) m / (minorTicks + 1)) / (majorCount - 1);
-                    double freqMinor = minFreq * Math.pow(ratio, subFrac);
-                    double fracMinorForX = Math.log(freqMinor / minFreq) / logDenom;
-                    int xMinor = (int) Math.round(fracMinorForX * (width - 1));
-                    int minorTickHeight = 6;
-                    g2d.drawLine(xMinor, 0, xMinor, minorTickHeight);
-                }
-            }
+            g2d.drawString(MAJOR[i], labelX, labelY);
         }
+        int minorTickHeight = 6;
+        for (int xMinor : minorX)
+            g2d.drawLine(xMinor, 0, xMinor, minorTickHeight);
     }
 
     @Override public void paint(Graphics g) {
         g.drawImage(img, 0, 0, null);
+        if (latency != null) {
+            latency.drawOverlay(g, getWidth());
+            latency.painted(Latency.SPECTROMETER);
+        }
+    }
+
+    void setLatency(Latency latency) {
+        this.latency = latency;
     }
 
     @Override public void close() throws IOException {
@@ -386,7 +409,7 @@ public class Spectrometer extends JPanel implements Closeable, Floating, Gui.Mou
 	private void updates() {
 		if (cache == null || live.isSelected())
 			return;
-		analyze(cache); // repaint
+		analyze(cache, cacheRms, cacheOverlay); // repaint
 	}
 
 	@Override public void resized(int w, int h) {
@@ -0,0 +1,135 @@
+package judahzone.scope;
+
+import static judahzone.util.WavConstants.FFT_SIZE;
+
+/** Left, right, mid and side spectra of a stereo frame from one complex FFT: the windowed left
+ * channel goes in as the real part and the right as the imaginary part, and the two real spectra
+ * are separated afterwards by conjugate symmetry:
+ * <pre>L[k] = (Z[k] + Z*[N-k]) / 2,   R[k] = (Z[k] - Z*[N-k]) / 2i</pre>
+ * Mid and side are (L + R) / 2 and (L - R) / 2 of those, so all four cost about one transform.
+ * In-place iterative radix-2, Hann window, magnitudes scaled so a full-scale sine reads 1.
+ * Steady state allocates nothing; one instance per thread. */
+public class StereoFFT {
+
+	public static enum View { LEFT, RIGHT, MID, SIDE }
+
+	private final int n;
+	private final int bins;
+	private final float[] window;
+	private final int[] reverse;
+	/** twiddles e^(-2 pi i k / n), k < n / 2 */
+	private final float[] cos, sin;
+	private final float[] re, im;
+	/** amplitude of a full-scale sine: 2 / sum(window) */
+	private final float scale;
+	private final float[][] magnitudes;
+	private final float[] rms = new float[View.values().length];
+
+	public StereoFFT() {
+		this(FFT_SIZE);
+	}
+
+	public StereoFFT(int size) {
+		if (size < 2 || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("FFT size must be a power of 2: " + size);
+		n = size;
+		bins = n / 2;
+		window = new float[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / n)); // periodic Hann
+			sum += window[i];
+		}
+		scale = (float) (2 / sum);
+		reverse = new int[n];
+		final int bits = Integer.numberOfTrailingZeros(n);
+		for (int i = 0; i < n; i++)
+			reverse[i] = Integer.reverse(i) >>> (32 - bits);
+		cos = new float[bins];
+		sin = new float[bins];
+		for (int k = 0; k < bins; k++) {
+			cos[k] = (float) Math.cos(2 * Math.PI * k / n);
+			sin[k] = (float) -Math.sin(2 * Math.PI * k / n);
+		}
+		re = new float[n];
+		im = new float[n];
+		magnitudes = new float[View.values().length][bins];
+	}
+
+	/** bins per spectrum (size / 2) */
+	public int bins() {
+		return bins;
+	}
+
+	/** analyze size samples of each channel, results in magnitudes() and rms() */
+	public void analyze(float[] left, float[] right) {
+		double l2 = 0, r2 = 0, m2 = 0, s2 = 0;
+		for (int i = 0; i < n; i++) {
+			final float l = left[i], r = right[i];
+			l2 += l * l;
+			r2 += r * r;
+			m2 += (l + r) * (l + r);
+			s2 += (l - r) * (l - r);
+			final int at = reverse[i];
+			re[at] = l * window[i];
+			im[at] = r * window[i];
+		}
+		rms[View.LEFT.ordinal()] = (float) Math.sqrt(l2 / n);
+		rms[View.RIGHT.ordinal()] = (float) Math.sqrt(r2 / n);
+		rms[View.MID.ordinal()] = (float) Math.sqrt(m2 / n) * 0.5f;
+		rms[View.SIDE.ordinal()] = (float) Math.sqrt(s2 / n) * 0.5f;
+		transform();
+		separate();
+	}
+
+	/** in-place decimation in time over bit-reversed input */
+	private void transform() {
+		for (int half = 1; half < n; half <<= 1) {
+			final int stride = bins / half;
+			for (int start = 0; start < n; start += half << 1) {
+				for (int j = 0, t = 0; j < half; j++, t += stride) {
+					final int a = start + j, b = a + half;
+					final float wr = cos[t], wi = sin[t];
+					final float xr = re[b] * wr - im[b] * wi;
+					final float xi = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - xr;
+					im[b] = im[a] - xi;
+					re[a] += xr;
+					im[a] += xi;
+				}
+			}
+		}
+	}
+
+	private void separate() {
+		final float[] left = magnitudes[View.LEFT.ordinal()];
+		final float[] right = magnitudes[View.RIGHT.ordinal()];
+		final float[] mid = magnitudes[View.MID.ordinal()];
+		final float[] side = magnitudes[View.SIDE.ordinal()];
+		final float half = 0.5f * scale;
+		for (int k = 0; k < bins; k++) {
+			final int j = (n - k) & (n - 1);
+			final float zr = re[k], zi = im[k];
+			final float cr = re[j], ci = -im[j]; // Z*[N-k]
+			final float lr = (zr + cr) * half, li = (zi + ci) * half;
+			final float rr = (zi - ci) * half, ri = (cr - zr) * half; // (Z - Z*) / 2i
+			left[k] = (float) Math.sqrt(lr * lr + li * li);
+			right[k] = (float) Math.sqrt(rr * rr + ri * ri);
+			final float mr = (lr + rr) * 0.5f, mi = (li + ri) * 0.5f;
+			final float sr = (lr - rr) * 0.5f, si = (li - ri) * 0.5f;
+			mid[k] = (float) Math.sqrt(mr * mr + mi * mi);
+			side[k] = (float) Math.sqrt(sr * sr + si * si);
+		}
+	}
+
+	/** the last analyze()'s spectrum, overwritten by the next one */
+	public float[] magnitudes(View view) {
+		return magnitudes[view.ordinal()];
+	}
+
+	/** the last analyze()'s time domain RMS */
+	public float rms(View view) {
+		return rms[view.ordinal()];
+	}
+
+}
@@ -0,0 +1,67 @@
+package judahzone.scope;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** The Spectrometer's stereo view: taps the main input and runs one StereoFFT per frame on the
+ * ScopeLane executor, for L/R or M/S spectra at the cost of a single transform.  The analysis
+ * thread publishes the newest pair latest-wins, the EDT take()s it and give()s it back. */
+class StereoTap extends LiveTransformer {
+
+	/** one filling, one published, one being drawn */
+	private static final int FRAMES = 3;
+
+	/** a pair of spectra to draw: bars and the overlay line */
+	static final class Frame {
+		final float[] bars;
+		final float[] overlay;
+		float rms;
+
+		private Frame(int bins) {
+			bars = new float[bins];
+			overlay = new float[bins];
+		}
+	}
+
+	private final StereoFFT fft = new StereoFFT();
+	private final ArrayBlockingQueue<Frame> free = new ArrayBlockingQueue<>(FRAMES);
+	private final AtomicReference<Frame> latest = new AtomicReference<>();
+	/** bars then overlay, replaced whole so a frame never mixes two settings */
+	private volatile StereoFFT.View[] views = { StereoFFT.View.LEFT, StereoFFT.View.RIGHT };
+
+	/** not stamped for Latency, the main analyzer times the same callbacks */
+	StereoTap() {
+		super(t -> { }, null, ScopeLane.pool());
+		for (int i = 0; i < FRAMES; i++)
+			free.add(new Frame(fft.bins()));
+	}
+
+	/** EDT: which spectra to draw as bars and as the overlay, e.g. LEFT/RIGHT or MID/SIDE */
+	void setViews(StereoFFT.View bars, StereoFFT.View overlay) {
+		views = new StereoFFT.View[] { bars, overlay };
+	}
+
+	@Override protected void frame(float[] left, float[] right) {
+		Frame f = free.poll();
+		if (f == null)
+			return; // the EDT holds the rest
+		fft.analyze(left, right);
+		final StereoFFT.View[] pair = views;
+		System.arraycopy(fft.magnitudes(pair[0]), 0, f.bars, 0, f.bars.length);
+		System.arraycopy(fft.magnitudes(pair[1]), 0, f.overlay, 0, f.overlay.length);
+		f.rms = fft.rms(pair[0]);
+		Frame stale = latest.getAndSet(f);
+		if (stale != null)
+			free.offer(stale);
+	}
+
+	/** EDT: the newest frame since the last take, or null.  give() it back when drawn. */
+	Frame take() {
+		return latest.getAndSet(null);
+	}
+
+	void give(Frame f) {
+		free.offer(f);
+	}
+
+}
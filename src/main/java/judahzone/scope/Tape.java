@@ -0,0 +1,45 @@
+package judahzone.scope;
+
+import judahzone.data.Recording;
+import judahzone.util.Constants;
+
+/** Builds a playback Recording from samples the analysis already has (a PcmFile, FileStream's
+ * blocks) in the engine's [2][bufSize] buffers, rather than decoding the file again with
+ * MP3.load().  The whole recording is on the heap, so only used when it fits. */
+class Tape {
+
+	private final int size = Constants.bufSize();
+	private final Recording rec = new Recording();
+	private float[][] buf;
+	private int at;
+
+	/** append left/right[offset, offset + length), mono passes the same array twice */
+	void append(float[] left, float[] right, int offset, int length) {
+		while (length > 0) {
+			if (buf == null) {
+				buf = new float[2][size];
+				at = 0;
+			}
+			int n = Math.min(length, size - at);
+			System.arraycopy(left, offset, buf[0], at, n);
+			System.arraycopy(right, offset, buf[1], at, n);
+			at += n;
+			offset += n;
+			length -= n;
+			if (at == size) {
+				rec.add(buf);
+				buf = null;
+			}
+		}
+	}
+
+	/** @return the recording, its last buffer padded with silence */
+	Recording finish() {
+		if (buf != null) {
+			rec.add(buf);
+			buf = null;
+		}
+		return rec;
+	}
+
+}
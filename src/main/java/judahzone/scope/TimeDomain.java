@@ -9,21 +9,20 @@ import java.awt.Stroke;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
-import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import judahzone.api.PlayAudio;
 import judahzone.api.Played;
 import judahzone.data.Recording;
 import judahzone.data.Transform;
 import judahzone.gui.Gui;
-import judahzone.util.Threads;
-import judahzone.util.WavConstants;
 
 public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
@@ -50,12 +49,16 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
     static final Color GUAGE = Color.DARK_GRAY;
 
     private final JudahScope scope;
-    private Transform[] db;
+    /** stamped when painted, may be null (offscreen) */
+    private final Latency latency;
+    private FrameDb db;
     private Spectrogram spectro;
     private RMSMeter rms;
     /** Shared Playa reference (for FILE mode), owned by JudahScope */
     private PlayAudio playa;
     private Recording tape;
+    /** showing a paused LiveHistory snapshot: zoom/scroll like a file, nothing to play */
+    private boolean history;
 
     /** Per-instance controls (RMS gain, zoom). */
     private final JPanel controls = new JPanel();
@@ -71,18 +74,37 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
     private DragMode inDrag = DragMode.OFF;
 
+    private static final long NO_HEAD = Long.MIN_VALUE;
+    /** Latest playback sample published by the player thread, NO_HEAD once consumed. */
+    private final AtomicLong head = new AtomicLong(NO_HEAD);
+    private final Timer headTimer = new Timer(1000 / Math.max(1, FrameScheduler.DEFAULT_FPS), e -> pollHead());
+    /** Caret clicks/drags seek the player latest-wins, rate bounded while dragging. */
+    private final SeekCoalescer seeker;
+    /** A drag moved the caret, Spectrometer redraw deferred to the next tick. */
+    private boolean pendingClick;
+
     /** Index viewport over db[], WaveImage-style. */
     private int startIndex = 0;
     private int endIndex;
     private int viewportSize;
     private int zoomCenterIndex;
 
+    /** Pixels either side of the caret line repainted when it moves. */
+    private static final int CARET_SLACK = 1;
+
     /** Minimum number of frames visible at maximum zoom. */
     private static final int MIN_VISIBLE_FRAMES = 16;
 
-    public TimeDomain(JudahScope view, int width, Transform[] initialDb) {
+    public TimeDomain(JudahScope view, int width, FrameDb initialDb) {
+        this(view, width, initialDb, view == null ? null : view.getLatency());
+    }
+
+    /** @param latency the live pipeline this TimeDomain paints for, null to not stamp */
+    public TimeDomain(JudahScope view, int width, FrameDb initialDb, Latency latency) {
         this.scope = view;
+        this.latency = latency;
         this.w = width;
+        this.seeker = new SeekCoalescer(view == null ? idx -> { } : view::seekToIndex); // null: offscreen
 
         addMouseListener(this);
         addMouseMotionListener(this);
@@ -95,12 +117,13 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
     /**
      * Swaps the data source for this TimeDomain.
-     * @param db The new Transform database.
+     * @param db The new frame database.
      * @param tape The associated Recording, or null.
      */
-    public void setData(Transform[] db, Recording tape) {
+    public void setData(FrameDb db, Recording tape) {
         this.db = db;
         this.tape = tape;
+        this.history = false;
         this.positionIndex = 0;
         this.zoomSlider.setEnabled(tape != null); // Enable zoom only for files
 
@@ -112,6 +135,40 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         fullRange(); // Resets viewport and regenerates
     }
 
+    /** Browse a paused live history, caret on the newest frame. */
+    public void setHistory(FrameDb snapshot) {
+        setData(snapshot, null);
+        history = true;
+        zoomSlider.setEnabled(true);
+        setPositionIndex(snapshot.size() - 1);
+    }
+
+    /** files and paused history zoom, scroll and label their frames */
+    private boolean browsable() {
+        return tape != null || history;
+    }
+
+    /** Attach the decoded Recording to the current db without resetting caret/viewport
+     * (streaming loads show frames before playback audio is ready). */
+    public void setTape(Recording tape) {
+        this.tape = tape;
+        this.zoomSlider.setEnabled(tape != null);
+        repaint();
+    }
+
+    /** Paint db[from, to) that arrived after the last regenerate, clipped to the viewport. */
+    public void update(int from, int to) {
+        if (rms == null || spectro == null)
+            return;
+        int begin = Math.max(from, startIndex);
+        int end = Math.min(to - 1, endIndex);
+        if (end < begin)
+            return;
+        rms.drawRange(unit, startIndex, begin, end);
+        spectro.drawRange(unit, startIndex, begin, end);
+        repaint();
+    }
+
     public JPanel getControls() {
         return controls;
     }
@@ -119,6 +176,11 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
     /** JudahScope wires the shared Playa into this TimeDomain when in FILE mode. */
     public void setPlaya(PlayAudio playa) {
         this.playa = playa;
+        head.set(NO_HEAD);
+        if (playa == null)
+            headTimer.stop();
+        else
+            headTimer.start();
     }
 
     private void initControls() {
@@ -149,10 +211,10 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
     }
 
     void fullRange() {
-        if (db == null || db.length == 0) {
+        if (db == null || db.size() == 0) {
             setRange(0, 0);
         } else {
-            setRange(0, db.length - 1);
+            setRange(0, db.size() - 1);
         }
         if (zoomSlider != null) {
             zoomSlider.setValue(1); // Corresponds to minimal zoom
@@ -165,14 +227,14 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
     /** Set absolute index range (inclusive) for viewport, clamp to db size. */
     private void setRange(int begin, int stop) {
-        if (db.length == 0) {
+        if (db.size() == 0) {
             startIndex = endIndex = 0;
             viewportSize = 0;
             zoomCenterIndex = 0;
             return;
         }
 
-        int max = db.length - 1;
+        int max = db.size() - 1;
         begin = Math.max(0, Math.min(max, begin));
         stop = Math.max(0, Math.min(max, stop));
 
@@ -204,16 +266,36 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         int relativeIndex = Math.round(xPixel / unit);
         int idx = startIndex + relativeIndex;
         idx = Math.max(startIndex, Math.min(endIndex, idx));
+        int old = positionIndex;
         positionIndex = idx;
         // For FILE mode, use JudahScope/Playa to seek; live mode just moves caret
         if (playa != null && tape != null) {
-            Threads.execute(() -> scope.seekToIndex(positionIndex));
+            seeker.seek(positionIndex);
         }
-        repaint();
+        caretMoved(old);
     }
 
     private int caretX() {
-        return Math.round((positionIndex - startIndex) * unit);
+        return xOf(positionIndex);
+    }
+
+    private int xOf(int idx) {
+        return Math.round((idx - startIndex) * unit);
+    }
+
+    /** Repaint only what a caret move from oldIndex touches: the old and new caret strips and,
+     * for files, the label strip (the head label follows the caret). */
+    private void caretMoved(int oldIndex) {
+        if (oldIndex == positionIndex)
+            return;
+        repaintCaret(xOf(oldIndex));
+        repaintCaret(caretX());
+        if (browsable())
+            repaint(0, HEIGHT_DRAWHEAD, getWidth(), HEIGHT_LABELS);
+    }
+
+    private void repaintCaret(int x) {
+        repaint(x - CARET_SLACK, 0, 2 * CARET_SLACK + 1, HEIGHT_DRAWHEAD);
     }
 
     /**
@@ -228,19 +310,19 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
      * Useful for restoring the live head position when switching modes.
      */
     public void setPositionIndex(int idx) {
-        if (db == null || db.length == 0) {
+        if (db == null || db.size() == 0) {
             positionIndex = 0;
             repaint();
             return;
         }
-        positionIndex = Math.max(0, Math.min(db.length - 1, idx));
+        positionIndex = Math.max(0, Math.min(db.size() - 1, idx));
         repaint();
     }
 
     public void analyze(Transform data) {
-        if (positionIndex < 0 || positionIndex >= db.length)
+        if (positionIndex < 0 || positionIndex >= db.size())
             return;
-        db[positionIndex] = data;
+        db.set(positionIndex, data);
 
         int xPixel = caretX();
         int nextX = Math.round((positionIndex + 1 - startIndex) * unit);
@@ -248,6 +330,7 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
         rms.analyze(xPixel, data, cellWidth);
         spectro.analyze(xPixel, data, cellWidth);
+        repaint(xPixel, 0, cellWidth, HEIGHT_DRAWHEAD);
 
         increment();
     }
@@ -266,11 +349,11 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
     }
 
     private void increment() {
+        int old = positionIndex;
         positionIndex++;
         if (positionIndex > endIndex)
             positionIndex = startIndex;
-        invalidate();
-        repaint();
+        caretMoved(old);
     }
 
     @Override
@@ -295,9 +378,11 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         int x = caretX();
         g.drawLine(x, 0, x, HEIGHT_DRAWHEAD);
 
-        if (tape != null) { // Only draw labels for files
+        if (browsable()) { // no labels for the rolling live sweep
             drawFrameLabels(g);
         }
+        if (latency != null)
+            latency.painted(Latency.TIME_DOMAIN);
     }
 
     private void drawFrameLabels(Graphics g) {
@@ -307,11 +392,11 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         int clearH = HEIGHT_LABELS;
         g.clearRect(0, clearY, getWidth(), clearH);
 
-        int maxSize = db.length;
+        int maxSize = db.size();
         int vis = Math.max(1, visibleLength());
         int percentVisible = Math.round((vis * 100f) / Math.max(1, maxSize));
         String leftLabel  = startIndex + "\\" + percentVisible + "%";
-        String rightLabel = endIndex + "\\" + db.length;
+        String rightLabel = endIndex + "\\" + db.size();
         String headLabel  = Integer.toString(positionIndex);
 
         int pad = 4;
@@ -352,14 +437,16 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
 
     @Override
     public void mousePressed(MouseEvent e) {
+        seeker.setScrubbing(true);
         setPositionByPixel(e.getPoint().x);
-        scope.click(db[positionIndex]);
+        scope.click(db, positionIndex);
         inDrag = DragMode.DRAG;
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
         inDrag = DragMode.OFF;
+        seeker.setScrubbing(false);
     }
 
     @Override
@@ -370,7 +457,10 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             return;
         if (inDrag != DragMode.DRAG)
             return;
-        scope.click(db[positionIndex]);
+        if (headTimer.isRunning())
+            pendingClick = true; // at most one redraw per tick while scrubbing
+        else
+            scope.click(db, positionIndex);
     }
 
     @Override
@@ -402,7 +492,7 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
     }
 
     private void setZoomScale(float amount) {
-        if (tape == null || db.length == 0)
+        if (!browsable() || db.size() == 0)
             return;
 
         if (amount <= 0.01f) { // Use a small threshold for full range
@@ -410,7 +500,7 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             return;
         }
 
-        int maxSize = db.length;
+        int maxSize = db.size();
         int minSize = Math.min(MIN_VISIBLE_FRAMES, maxSize);
 
         // Logarithmic-like scaling for better feel
@@ -430,8 +520,8 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             newStart = 0;
             newEnd = newSize - 1;
         }
-        if (newEnd >= db.length) {
-            newEnd = db.length - 1;
+        if (newEnd >= db.size()) {
+            newEnd = db.size() - 1;
             newStart = newEnd - newSize + 1;
             if (newStart < 0)
                 newStart = 0;
@@ -456,9 +546,9 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             regenerateChildren();
             repaint();
         } else if (isCtrlPressed) {
-            if (tape != null) { // Zoom only for files
+            if (browsable()) { // Zoom only for files and history
                 zoom(up);
-                int maxSize = db.length;
+                int maxSize = db.size();
                 int minSize = Math.min(MIN_VISIBLE_FRAMES, maxSize);
                 float amount = (maxSize == minSize)
                         ? 1f
@@ -470,36 +560,80 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             int incrementFactor = Math.max(1, visibleLength() / 20);
             int newIndex = positionIndex + (up ? -incrementFactor : incrementFactor);
             newIndex = Math.max(startIndex, Math.min(endIndex, newIndex));
+            int old = positionIndex;
             positionIndex = newIndex;
-            scope.click(db[positionIndex]);
-            repaint();
+            scope.click(db, positionIndex);
+            caretMoved(old);
         } else {
             scroll(up);
         }
     }
 
     private void scroll(boolean left) {
-        if (tape == null || db.length == 0 || viewportSize <= 0)
+        if (!browsable() || db.size() == 0 || viewportSize <= 0)
+            return;
+        int delta = (left ? -1 : 1) * aligned((int) (0.25f * viewportSize));
+        shiftRange(startIndex + delta, endIndex + delta);
+    }
+
+    /** Keep the playback head in view: page the viewport when the head leaves it. */
+    private void follow(int idx) {
+        if (tape == null || viewportSize <= 0 || viewportSize >= db.size())
+            return;
+        if (idx >= startIndex && idx <= endIndex)
             return;
-        int delta = (left ? -1 : 1) * (int) (0.25f * viewportSize);
-        int newStart = startIndex + delta;
-        int newEnd = endIndex + delta;
+        int delta = idx - viewportSize / 8 - startIndex; // land the head near the left edge
+        int step = aligned(Math.abs(delta));
+        shiftRange(startIndex + Integer.signum(delta) * step, endIndex + Integer.signum(delta) * step);
+    }
+
+    /** @return frames nearest to the requested amount that move the image by whole pixels
+     * (frames * w divisible by viewportSize), or frames itself if no such amount is close. */
+    private int aligned(int frames) {
+        int step = viewportSize / gcd(w, viewportSize);
+        if (step <= 1 || step > viewportSize / 2)
+            return frames;
+        return Math.max(step, Math.round(frames / (float) step) * step);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.max(1, a);
+    }
 
+    /** Move the viewport keeping its size. Whole-pixel moves blit the still-visible part of each
+     * image and render only the exposed strip, anything else regenerates. */
+    private void shiftRange(int newStart, int newEnd) {
         if (newStart < 0) {
             newStart = 0;
             newEnd = newStart + viewportSize - 1;
         }
-        if (newEnd >= db.length) {
-            newEnd = db.length - 1;
+        if (newEnd >= db.size()) {
+            newEnd = db.size() - 1;
             newStart = newEnd - viewportSize + 1;
             if (newStart < 0)
                 newStart = 0;
         }
-        setRange(newStart, newEnd);
+        int delta = newStart - startIndex;
+        if (delta == 0 || newEnd - newStart + 1 != viewportSize || ((long) delta * w) % viewportSize != 0) {
+            setRange(newStart, newEnd);
+            return;
+        }
+        int dx = (int) (-(long) delta * w / viewportSize);
+        startIndex = newStart;
+        endIndex = newEnd;
+        zoomCenterIndex = (startIndex + endIndex) / 2;
+        rms.scroll(dx, unit, startIndex, endIndex);
+        spectro.scroll(dx, unit, startIndex, endIndex);
+        repaint();
     }
 
     private void zoom(boolean zoomIn) {
-        if (tape == null || db.length == 0)
+        if (!browsable() || db.size() == 0)
             return;
 
         int length = visibleLength();
@@ -509,7 +643,7 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         float factor = zoomIn ? 0.8f : 1.25f;
         int newSize = Math.round(length * factor);
 
-        int maxSize = db.length;
+        int maxSize = db.size();
         int minSize = Math.min(MIN_VISIBLE_FRAMES, maxSize);
 
         newSize = Math.max(minSize, Math.min(maxSize, newSize));
@@ -523,8 +657,8 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
             newStart = 0;
             newEnd = newSize - 1;
         }
-        if (newEnd >= db.length) {
-            newEnd = db.length - 1;
+        if (newEnd >= db.size()) {
+            newEnd = db.size() - 1;
             newStart = newEnd - newSize + 1;
             if (newStart < 0)
                 newStart = 0;
@@ -532,21 +666,34 @@ public class TimeDomain extends JPanel implements Gui.Mouse, Played {
         setRange(newStart, newEnd);
     }
 
+    /** Player (audio) thread: publish the latest sample position only, picked up by pollHead(). */
 	@Override
 	public void setHead(long sample) {
-        if (db == null || db.length == 0 || tape == null)
-        	return;
+        head.lazySet(sample);
+	}
+
+    /** EDT, once per display tick: move the caret to the most recently published head. */
+    private void pollHead() {
+        if (pendingClick) {
+            pendingClick = false;
+            scope.click(db, positionIndex);
+        }
+        long sample = head.getAndSet(NO_HEAD);
+        if (sample == NO_HEAD || db == null || db.size() == 0 || tape == null)
+            return;
 
         // Convert sample frame position to transform db index
-        // Each transform represents FFT_SIZE sample frames
-        int idx = (int) (sample / WavConstants.FFT_SIZE);
+        // Each transform starts HOP sample frames after the previous one
+        int idx = (int) (sample / FileAnalyzer.HOP);
 
-        final int clamped = Math.max(0, Math.min(db.length - 1, idx));
-        if (positionIndex == clamped) return;
+        final int clamped = Math.max(0, Math.min(db.size() - 1, idx));
+        final int old = positionIndex;
+        if (old == clamped) return;
 
         positionIndex = clamped;
-        SwingUtilities.invokeLater(() -> scope.click(db[clamped]));
-        repaint();
+        scope.click(db, clamped);
+        follow(clamped);
+        caretMoved(old);
 	}
 
 	@Override public void playState() { /* no-op, BoomBox manages play button */ }
@@ -4,6 +4,7 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 import judahzone.data.Transform;
 
@@ -15,19 +16,22 @@ public abstract class TimeWidget extends BufferedImage {
 
 	protected int w, h;
 	protected final Graphics2D g2d;
-	protected Transform[] db;
+	/** the raster's backing ARGB array, row-major (y * w + x), for direct pixel writes */
+	protected final int[] pixels;
+	protected FrameDb db;
 
-	public TimeWidget(Dimension size, Transform[] db) { // fixed length
+	public TimeWidget(Dimension size, FrameDb db) { // fixed length
 		super(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
 		this.db = db;
 		w = size.width;
 		h = size.height;
 		g2d = createGraphics();
+		pixels = ((DataBufferInt) getRaster().getDataBuffer()).getData();
 		g2d.setBackground(BACKGROUND);
 		g2d.clearRect(0, 0, w, h);
 	}
 
-	public void setDb(Transform[] db) {
+	public void setDb(FrameDb db) {
 		this.db = db;
 	}
 
@@ -38,7 +42,130 @@ public abstract class TimeWidget extends BufferedImage {
 	 * @param startIndex  inclusive start index in db[]
 	 * @param endIndex    inclusive end index in db[]
 	 */
-	abstract void generateImage(float unit, int startIndex, int endIndex);
+	void generateImage(float unit, int startIndex, int endIndex) {
+		ScopeEvents.Regenerate event = new ScopeEvents.Regenerate();
+		event.begin();
+		clearRect(0, w);
+		render(unit, startIndex, endIndex, 0, w);
+		drawBorder();
+		regenerated(event, unit, startIndex, endIndex, w);
+	}
+
+	/**
+	 * Move the image content dx pixels (negative: content moves left) for a viewport that now
+	 * starts at startIndex, then render only the newly exposed strip (plus the column the old
+	 * border moved into).
+	 */
+	void scroll(int dx, float unit, int startIndex, int endIndex) {
+		if (dx == 0)
+			return;
+		if (Math.abs(dx) >= w - 1) {
+			generateImage(unit, startIndex, endIndex);
+			return;
+		}
+		final int keep = w - Math.abs(dx);
+		for (int y = 0; y < h; y++) {
+			int row = y * w;
+			if (dx < 0)
+				System.arraycopy(pixels, row - dx, pixels, row, keep);
+			else
+				System.arraycopy(pixels, row, pixels, row + dx, keep);
+		}
+		ScopeEvents.Regenerate event = new ScopeEvents.Regenerate();
+		event.begin();
+		int x0 = dx < 0 ? keep - 1 : 0;
+		int x1 = dx < 0 ? w : dx + 1;
+		clearRect(x0, x1 - x0);
+		render(unit, startIndex, endIndex, x0, x1);
+		drawBorder();
+		regenerated(event, unit, startIndex, endIndex, x1 - x0);
+	}
+
+	private void regenerated(ScopeEvents.Regenerate event, float unit, int startIndex, int endIndex, int columns) {
+		if (!event.shouldCommit())
+			return;
+		event.widget = getClass().getSimpleName();
+		event.unit = unit;
+		event.startIndex = startIndex;
+		event.endIndex = endIndex;
+		event.columns = columns;
+		event.commit();
+	}
+
+	/** draw the viewport's pixel columns [x0, x1), not cleared first */
+	private void render(float unit, int startIndex, int endIndex, int x0, int x1) {
+		if (unit >= 1f || db == null) {
+			int from = x0 == 0 ? startIndex : startIndex + (int) (x0 / unit) - 1; // cell may start left of x0
+			int to = Math.min(endIndex, startIndex + (int) Math.ceil(x1 / unit));
+			drawRange(unit, startIndex, Math.max(startIndex, from), to);
+		} else
+			drawColumns(unit, startIndex, endIndex, x0, x1);
+	}
+
+	/**
+	 * Zoomed out (several frames per pixel): one pass per screen column, max-combining the
+	 * cells of the coarsest pyramid level that still fits inside a column.
+	 */
+	private void drawColumns(float unit, int startIndex, int endIndex, int x0, int x1) {
+		if (startIndex < 0 || startIndex >= db.size())
+			return;
+		endIndex = Math.min(endIndex, db.size() - 1);
+		int k = 31 - Integer.numberOfLeadingZeros(Math.max(1, (int) (1f / unit))); // floor(log2(frames per pixel))
+		k = Math.min(k, db.levels() - 1);
+		while (k > 0 && db.level(k) == null)
+			k--;
+		FrameDb level = db.level(k);
+
+		int before = Math.max(0, startIndex + (int) Math.ceil((x0 - 1) / unit)); // column x0 - 1
+		int last = Math.min(endIndex, startIndex + (int) Math.ceil(x0 / unit) - 1);
+		preceding(level, before >> k, last < before ? -1 : Math.min(last >> k, level.size() - 1));
+		for (int x = x0; x < x1; x++) {
+			int from = startIndex + (int) Math.ceil(x / unit);
+			int to = Math.min(endIndex, startIndex + (int) Math.ceil((x + 1) / unit) - 1);
+			if (to < from)
+				continue;
+			drawColumn(x, level, from >> k, Math.min(to >> k, level.size() - 1));
+		}
+	}
+
+	/**
+	 * Draw db[from..to] into the viewport that begins at startIndex, without clearing
+	 * the rest of the image (streaming loads fill in columns as they arrive).
+	 *
+	 * @param unit        pixels per index (can be fractional)
+	 * @param startIndex  first db index of the viewport (pixel 0)
+	 * @param from        inclusive first index to draw
+	 * @param to          inclusive last index to draw
+	 */
+	void drawRange(float unit, int startIndex, int from, int to) {
+		if (db == null || from < 0 || to < 0 || from >= db.size())
+			return;
+		if (to >= db.size())
+			to = db.size() - 1;
+		preceding(db, from - 1, from - 1);
+
+		// unit can be fractional, but we need integer cell positions
+		for (int dbIndex = from; dbIndex <= to; dbIndex++) {
+			if (!db.has(dbIndex))
+				continue; // holes in db for live mode / partial files
+
+			int i = dbIndex - startIndex;
+			int xOnScreen = Math.round(i * unit);
+			int nextX = Math.round((i + 1) * unit);
+			int cellWidth = Math.max(1, nextX - xOnScreen);
+			drawCell(xOnScreen, dbIndex, cellWidth);
+		}
+	}
+
+	/** paint db entry idx into its viewport cell (no clearing) */
+	abstract void drawCell(int xOnScreen, int idx, int cellWidth);
+
+	/** paint the max of level entries [from..to] into the single pixel column x (no clearing) */
+	abstract void drawColumn(int x, FrameDb level, int from, int to);
+
+	/** before a strip is drawn: level entries [from..to] of the column just left of it (empty if
+	 * to < from), for widgets that carry state from column to column */
+	void preceding(FrameDb level, int from, int to) { }
 
 	/**
 	 * Render/update a single index within the current viewport.
@@ -0,0 +1,57 @@
+package judahzone.scope;
+
+import judahzone.data.Transform;
+
+/** FrameDb over Transform objects (live buffer, freshly analyzed files) */
+public class TransformDb implements FrameDb {
+
+	private final Transform[] db;
+	private int bins;
+
+	public TransformDb(int size) {
+		this(new Transform[size]);
+	}
+
+	public TransformDb(Transform[] db) {
+		this.db = db;
+	}
+
+	@Override public int size() {
+		return db.length;
+	}
+
+	@Override public boolean has(int idx) {
+		return db[idx] != null;
+	}
+
+	@Override public int bins() {
+		if (bins == 0)
+			for (Transform t : db)
+				if (t != null) {
+					bins = t.magnitudes().length;
+					break;
+				}
+		return bins;
+	}
+
+	@Override public float[] magnitudes(int idx, float[] scratch) {
+		return db[idx].magnitudes();
+	}
+
+	@Override public float rms(int idx) {
+		return db[idx].rms().rms();
+	}
+
+	@Override public float peak(int idx) {
+		return db[idx].rms().peak();
+	}
+
+	@Override public void set(int idx, Transform t) {
+		db[idx] = t;
+	}
+
+	public Transform get(int idx) {
+		return db[idx];
+	}
+
+}
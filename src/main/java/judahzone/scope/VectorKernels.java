@@ -0,0 +1,134 @@
+package judahzone.scope;
+
+import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.ASHR;
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.I2F;
+import static jdk.incubator.vector.VectorOperators.LOG10;
+import static jdk.incubator.vector.VectorOperators.LOG1P;
+import static jdk.incubator.vector.VectorOperators.LT;
+import static jdk.incubator.vector.VectorOperators.MAX;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/** Kernels on the Vector API at the platform's preferred width, scalar tails.  Only loaded by
+ * name from Kernels.vector(), so the rest of the scope runs without the incubator module. */
+final class VectorKernels implements Kernels {
+
+	private static final VectorSpecies<Float> S = FloatVector.SPECIES_PREFERRED;
+	private static final int LANES = S.length();
+
+	@Override public float squares(float[] in, float[] out, int n) {
+		final FloatVector zero = FloatVector.zero(S);
+		FloatVector top = zero;
+		int i = 0;
+		for (int bound = S.loopBound(n); i < bound; i += LANES) {
+			FloatVector v = FloatVector.fromArray(S, in, i);
+			VectorMask<Float> ok = v.compare(GE, 0f).and(v.compare(LT, Float.POSITIVE_INFINITY)); // NaN fails both
+			v = zero.blend(v, ok);
+			FloatVector p = v.mul(v);
+			p.intoArray(out, i);
+			top = top.max(p);
+		}
+		float max = top.reduceLanes(MAX);
+		for (; i < n; i++) {
+			float mag = in[i];
+			if (!(mag >= 0f) || mag == Float.POSITIVE_INFINITY)
+				mag = 0f;
+			float p = mag * mag;
+			out[i] = p;
+			if (p > max) max = p;
+		}
+		return max;
+	}
+
+	@Override public void means(float[] power, int[] left, int[] right, float[] out, int bars) {
+		for (int bx = 0; bx < bars; bx++) {
+			final int binLeft = left[bx];
+			final int end = right[bx] + 1;
+			int b = binLeft;
+			float sum = 0f;
+			if (end - b >= LANES) { // low bars span a bin or two, high bars many
+				FloatVector acc = FloatVector.zero(S);
+				for (; b + LANES <= end; b += LANES)
+					acc = acc.add(FloatVector.fromArray(S, power, b));
+				sum = acc.reduceLanes(ADD);
+			}
+			for (; b < end; b++)
+				sum += power[b];
+			out[bx] = sum / (end - binLeft);
+		}
+	}
+
+	@Override public float scale(float[] a, float[] gain, int n) {
+		FloatVector top = FloatVector.zero(S);
+		int i = 0;
+		for (int bound = S.loopBound(n); i < bound; i += LANES) {
+			FloatVector p = FloatVector.fromArray(S, a, i).mul(FloatVector.fromArray(S, gain, i));
+			p.intoArray(a, i);
+			top = top.max(p);
+		}
+		float max = top.reduceLanes(MAX);
+		for (; i < n; i++) {
+			float p = a[i] * gain[i];
+			a[i] = p;
+			if (p > max) max = p;
+		}
+		return max;
+	}
+
+	@Override public float max(float[] a, int from, int to) {
+		FloatVector top = FloatVector.zero(S);
+		int i = from;
+		for (; i + LANES <= to; i += LANES)
+			top = top.max(FloatVector.fromArray(S, a, i));
+		float max = top.reduceLanes(MAX);
+		for (; i < to; i++)
+			if (a[i] > max) max = a[i];
+		return max;
+	}
+
+	@Override public void maxInto(float[] into, float[] a, int n) {
+		int i = 0;
+		for (int bound = S.loopBound(n); i < bound; i += LANES)
+			FloatVector.fromArray(S, into, i).max(FloatVector.fromArray(S, a, i)).intoArray(into, i);
+		for (; i < n; i++)
+			if (a[i] > into[i])
+				into[i] = a[i];
+	}
+
+	@Override public void db(float[] power, float[] out, int n) {
+		int i = 0;
+		for (int bound = S.loopBound(n); i < bound; i += LANES) {
+			FloatVector p = FloatVector.fromArray(S, power, i).add(EPS);
+			(FastMath.EXACT ? p.lanewise(LOG10).mul(10f) : ln(p).mul(10f * FastMath.LOG10_E)).intoArray(out, i);
+		}
+		for (; i < n; i++)
+			out[i] = FastMath.db(power[i] + EPS);
+	}
+
+	@Override public void logRamp(float[] in, float[] out, int n, float k, float scale) {
+		int i = 0;
+		for (int bound = S.loopBound(n); i < bound; i += LANES) {
+			FloatVector y = FloatVector.fromArray(S, in, i).mul(k);
+			(FastMath.EXACT ? y.lanewise(LOG1P) : ln(y.add(1f))).mul(scale).intoArray(out, i);
+		}
+		for (; i < n; i++)
+			out[i] = FastMath.log1p(in[i] * k) * scale;
+	}
+
+	/** FastMath.ln across lanes, for normal positive input (power + EPS, 1 + ramp) */
+	private static FloatVector ln(FloatVector x) {
+		IntVector bits = x.reinterpretAsInts().add(FastMath.ONE - FastMath.SQRT_HALF);
+		FloatVector k = (FloatVector) bits.lanewise(ASHR, 23).sub(127).convert(I2F, 0);
+		FloatVector f = bits.and(FastMath.MANTISSA).add(FastMath.SQRT_HALF).reinterpretAsFloats().sub(1f);
+		FloatVector s = f.div(f.add(2f));
+		FloatVector z = s.mul(s);
+		FloatVector series = z.mul(FastMath.C7).add(FastMath.C5).mul(z).add(FastMath.C3).mul(z).add(2f);
+		return k.mul(FastMath.LN2).add(s.mul(series));
+	}
+
+}